@@ -0,0 +1,198 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The tags of a series as an immutable map backed by a single array of keys and values, sorted by key.
+ * <p>
+ * Compared to a HashMap, a series' tags take one object and one array instead of a table and one node per tag.
+ * Measurement names, tag keys and tag values are interned when series are created (see {@link #intern(String)}), so
+ * series repeating the same strings share a single instance, no matter where the caller got its strings from. Strings
+ * are interned weakly and go away with the last series using them.
+ */
+final class CompactTags extends AbstractMap<String, String> {
+    static final CompactTags EMPTY = new CompactTags(new String[0]);
+
+    private static final Interner<String> STRINGS = Interners.newWeakInterner();
+
+    private final String[] keysAndValues;
+    private final int hashCode;
+
+    private CompactTags(final String[] keysAndValues) {
+        this.keysAndValues = keysAndValues;
+
+        int hashCode = 0;
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            hashCode += Objects.hashCode(keysAndValues[i]) ^ Objects.hashCode(keysAndValues[i + 1]);
+        }
+        this.hashCode = hashCode;
+    }
+
+    /**
+     * @return Interned tags for a series.
+     */
+    static CompactTags of(final Collection<MetricTag> tags) {
+        return of(tags, true);
+    }
+
+    /**
+     * @return Interned tags for a series.
+     */
+    static CompactTags of(final Map<String, String> tags) {
+        if (tags instanceof CompactTags) {
+            return (CompactTags) tags;
+        }
+
+        final List<MetricTag> metricTags = new ArrayList<>(tags.size());
+        tags.forEach((key, value) -> metricTags.add(new MetricTag(key, value)));
+        return of(metricTags, true);
+    }
+
+    /**
+     * @return Tags to look up a series by, which are not interned.
+     */
+    static CompactTags forLookup(final Collection<MetricTag> tags) {
+        return of(tags, false);
+    }
+
+    private static CompactTags of(final Collection<MetricTag> tags, final boolean intern) {
+        if (tags.isEmpty()) {
+            return EMPTY;
+        }
+
+        final MetricTag[] sortedTags = tags.toArray(new MetricTag[tags.size()]);
+        if (!isSorted(sortedTags)) {
+            Arrays.sort(sortedTags, (a, b) -> compareKeys(a.getTagName(), b.getTagName()));
+        }
+
+        final String[] keysAndValues = new String[sortedTags.length * 2];
+        for (int i = 0; i < sortedTags.length; i++) {
+            final String key = sortedTags[i].getTagName();
+            if (i > 0 && compareKeys(key, keysAndValues[2 * i - 2]) == 0) {
+                throw new IllegalArgumentException("Duplicate tag " + key);
+            }
+            keysAndValues[2 * i] = intern ? intern(key) : key;
+            keysAndValues[2 * i + 1] = intern ? intern(sortedTags[i].getTagValue()) : sortedTags[i].getTagValue();
+        }
+        return new CompactTags(keysAndValues);
+    }
+
+    private static boolean isSorted(final MetricTag[] tags) {
+        for (int i = 1; i < tags.length; i++) {
+            if (compareKeys(tags[i - 1].getTagName(), tags[i].getTagName()) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int compareKeys(final String a, final String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return a.compareTo(b);
+    }
+
+    /**
+     * @return The canonical instance of `value`, or null if `value` is null.
+     */
+    static String intern(final String value) {
+        return value != null ? STRINGS.intern(value) : null;
+    }
+
+    @Override
+    public int size() {
+        return keysAndValues.length / 2;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get(final Object key) {
+        final int index = indexOf(key);
+        return index >= 0 ? keysAndValues[2 * index + 1] : null;
+    }
+
+    private int indexOf(final Object key) {
+        if (key != null && !(key instanceof String)) {
+            return -1;
+        }
+
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = compareKeys(keysAndValues[2 * middle], (String) key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+                    private int index = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < keysAndValues.length;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        final Entry<String, String> entry = new SimpleImmutableEntry<>(keysAndValues[index], keysAndValues[index + 1]);
+                        index += 2;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return CompactTags.this.size();
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (o instanceof CompactTags) {
+            final CompactTags that = (CompactTags) o;
+            return hashCode == that.hashCode && Arrays.equals(keysAndValues, that.keysAndValues);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
@@ -1,22 +1,42 @@
 package net.monofraps.influxmetrics;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Model of a single data point.
  * A data point has a timestamp, a corresponding precision and a map of field names and values.
+ * Data points collected from time series store their fields as {@link FieldValues} to avoid boxing; the map view is
+ * created on demand.
+ * Data points of event series may carry tags of their own, which add to the tags of their series.
  * @author monofraps
  */
 public class DataPoint {
     private final long time;
     private final TimeUnit precision;
     private final Map<String, Object> fields;
+    private final FieldValues fieldValues;
+    private final Map<String, String> tags;
 
     public DataPoint(long time, TimeUnit precision, Map<String, Object> fields) {
         this.time = time;
         this.precision = precision;
         this.fields = fields;
+        this.fieldValues = null;
+        this.tags = Collections.emptyMap();
+    }
+
+    public DataPoint(long time, TimeUnit precision, FieldValues fieldValues) {
+        this(time, precision, fieldValues, Collections.emptyMap());
+    }
+
+    public DataPoint(long time, TimeUnit precision, FieldValues fieldValues, Map<String, String> tags) {
+        this.time = time;
+        this.precision = precision;
+        this.fields = null;
+        this.fieldValues = fieldValues;
+        this.tags = tags;
     }
 
     public long getTime() {
@@ -28,6 +48,17 @@ public class DataPoint {
     }
 
     public Map<String, Object> getFields() {
-        return fields;
+        return fields != null ? fields : fieldValues.toMap();
+    }
+
+    public FieldValues getFieldValues() {
+        return fieldValues != null ? fieldValues : FieldValues.fromMap(fields);
+    }
+
+    /**
+     * @return The point's own tags, in addition to the tags of its series.
+     */
+    public Map<String, String> getTags() {
+        return tags;
     }
 }
@@ -0,0 +1,364 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import net.monofraps.influxmetrics.fields.FieldSink;
+import net.monofraps.influxmetrics.reflection.GetterAccessor;
+
+import java.lang.reflect.Method;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Stores pending events as compact binary records in direct {@link ByteBuffer} chunks of fixed size, outside of the
+ * Java heap. Buffered events then neither add to the live set nor get promoted to the old generation, no matter how
+ * long the reporter cannot deliver them.
+ * <p>
+ * A record holds the event's timestamp and tag set id followed by its fields in getter order: long and double fields
+ * as 8 bytes, other fields as a type byte followed by the value, strings UTF-8 encoded. Events are encoded into a
+ * thread-local scratch buffer, which grows with the records up to the chunk size, so getters are not invoked while
+ * holding the arena's lock, which only covers copying the record into the current chunk.
+ * <p>
+ * Drained chunks are held until the report they were drained for is committed, and returned to the front of the queue
+ * if it is rolled back, so events survive reports that fail to be written. Committed chunks are kept for reuse, so the
+ * arena allocates at most `maxBytes / chunkSize` chunks over its lifetime.
+ */
+class EventArena {
+    private static final byte NULL = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte BOOLEAN = 3;
+    private static final byte STRING = 4;
+    private static final int INITIAL_SCRATCH_BUFFER_SIZE = 256;
+
+    private final List<FieldCodec> codecs;
+    private final int chunkSize;
+    private final int maxChunks;
+    private final boolean dropOldest;
+    private final ThreadLocal<ByteBuffer> scratchBuffer;
+
+    private final ArrayDeque<Chunk> pendingChunks = new ArrayDeque<>();
+    private final ArrayDeque<Chunk> freeChunks = new ArrayDeque<>();
+    private final List<Chunk> drainedChunks = new ArrayList<>();
+    private Chunk currentChunk;
+    private int allocatedChunks = 0;
+    private volatile long usedBytes = 0;
+
+    /**
+     * @param chunkSize  The size of a chunk in bytes, which is also the maximum size of a single record.
+     * @param maxBytes   The maximum number of bytes allocated by the arena, rounded down to whole chunks.
+     * @param dropOldest Whether to drop the oldest chunk of records when the arena is full instead of the new record.
+     */
+    EventArena(final Collection<Method> getters, final int chunkSize, final long maxBytes, final boolean dropOldest) {
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+        Preconditions.checkArgument(maxBytes >= chunkSize, "maxBytes must hold at least one chunk");
+
+        final ImmutableList.Builder<FieldCodec> codecs = ImmutableList.builder();
+        for (Method getter : getters) {
+            final String name = getter.getName().substring(3);
+            final GetterAccessor accessor = GetterAccessor.forGetter(getter);
+            final Class<?> type = getter.getReturnType();
+
+            if (type == long.class || type == int.class) {
+                codecs.add(new LongCodec(name, accessor));
+            } else if (type == double.class || type == float.class) {
+                codecs.add(new DoubleCodec(name, accessor));
+            } else {
+                codecs.add(new ObjectCodec(name, accessor));
+            }
+        }
+        this.codecs = codecs.build();
+        this.chunkSize = chunkSize;
+        this.maxChunks = (int) Math.min(Integer.MAX_VALUE, maxBytes / chunkSize);
+        this.dropOldest = dropOldest;
+        this.scratchBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(Math.min(chunkSize, INITIAL_SCRATCH_BUFFER_SIZE)));
+    }
+
+    /**
+     * Receives the records of drained chunks, oldest first.
+     */
+    interface RecordConsumer {
+        /**
+         * @return The sink to decode the fields of the record into.
+         */
+        FieldSink startRecord(long timestamp, int tagSetId);
+
+        void endRecord();
+    }
+
+    /**
+     * Encodes `event` and appends it to the arena.
+     *
+     * @return The number of records dropped to append the event, including the event itself if it was not appended.
+     */
+    int append(final Object event, final long timestamp, final int tagSetId) {
+        final ByteBuffer record = encode(event, timestamp, tagSetId);
+        if (record == null) {
+            // the record does not fit into a chunk
+            return 1;
+        }
+
+        synchronized (this) {
+            int droppedRecords = 0;
+            if (currentChunk == null || currentChunk.buffer.remaining() < record.remaining()) {
+                if (currentChunk != null) {
+                    pendingChunks.add(currentChunk);
+                    currentChunk = null;
+                }
+                if (freeChunks.isEmpty() && allocatedChunks == maxChunks) {
+                    if (!dropOldest || pendingChunks.isEmpty()) {
+                        return 1;
+                    }
+                    final Chunk oldestChunk = pendingChunks.poll();
+                    droppedRecords = oldestChunk.recordCount;
+                    release(oldestChunk);
+                }
+                currentChunk = nextFreeChunk();
+            }
+
+            usedBytes += record.remaining();
+            currentChunk.size += record.remaining();
+            currentChunk.buffer.put(record);
+            currentChunk.recordCount++;
+            return droppedRecords;
+        }
+    }
+
+    /**
+     * Encodes `event` into the calling thread's scratch buffer, growing it up to the chunk size if necessary.
+     *
+     * @return The record, or null if it is larger than a chunk.
+     */
+    private ByteBuffer encode(final Object event, final long timestamp, final int tagSetId) {
+        ByteBuffer record = scratchBuffer.get();
+        while (true) {
+            record.clear();
+            try {
+                record.putLong(timestamp).putInt(tagSetId);
+                for (int i = 0; i < codecs.size(); i++) {
+                    codecs.get(i).encode(event, record);
+                }
+                record.flip();
+                return record;
+            } catch (BufferOverflowException e) {
+                if (record.capacity() == chunkSize) {
+                    return null;
+                }
+                record = ByteBuffer.allocate((int) Math.min(chunkSize, 2L * record.capacity()));
+                scratchBuffer.set(record);
+            }
+        }
+    }
+
+    private Chunk nextFreeChunk() {
+        if (!freeChunks.isEmpty()) {
+            return freeChunks.poll();
+        }
+        allocatedChunks++;
+        return new Chunk(ByteBuffer.allocateDirect(chunkSize));
+    }
+
+    /**
+     * Passes all records appended so far to `consumer` and holds their chunks until {@link #commit()} or
+     * {@link #rollback()}. Chunks of a previous drain which was neither committed nor rolled back are committed. If
+     * `consumer` throws, the drained chunks are released, so that a record which cannot be consumed does not fail
+     * every following drain.
+     */
+    void drain(final RecordConsumer consumer) {
+        final List<Chunk> chunks;
+        synchronized (this) {
+            commit();
+            chunks = new ArrayList<>(pendingChunks.size() + 1);
+            chunks.addAll(pendingChunks);
+            pendingChunks.clear();
+            if (currentChunk != null) {
+                chunks.add(currentChunk);
+                currentChunk = null;
+            }
+        }
+
+        boolean consumed = false;
+        try {
+            for (Chunk chunk : chunks) {
+                final ByteBuffer buffer = chunk.buffer;
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    final FieldSink sink = consumer.startRecord(buffer.getLong(), buffer.getInt());
+                    for (FieldCodec codec : codecs) {
+                        codec.decode(buffer, sink);
+                    }
+                    consumer.endRecord();
+                }
+            }
+            consumed = true;
+        } finally {
+            synchronized (this) {
+                if (consumed) {
+                    drainedChunks.addAll(chunks);
+                } else {
+                    chunks.forEach(this::release);
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the chunks of the last drain for reuse.
+     */
+    synchronized void commit() {
+        drainedChunks.forEach(this::release);
+        drainedChunks.clear();
+    }
+
+    /**
+     * Returns the chunks of the last drain to the front of the queue, so the next drain passes their records again.
+     */
+    synchronized void rollback() {
+        for (int i = drainedChunks.size() - 1; i >= 0; i--) {
+            final Chunk chunk = drainedChunks.get(i);
+            // back to appending mode, positioned after the last record
+            chunk.buffer.limit(chunk.buffer.capacity());
+            chunk.buffer.position(chunk.size);
+            if (currentChunk == null && i == drainedChunks.size() - 1) {
+                // nothing was appended since the drain, so new records can still go after the last drained one
+                currentChunk = chunk;
+            } else {
+                pendingChunks.addFirst(chunk);
+            }
+        }
+        drainedChunks.clear();
+    }
+
+    private void release(final Chunk chunk) {
+        usedBytes -= chunk.size;
+        chunk.reset();
+        freeChunks.add(chunk);
+    }
+
+    long getLimitBytes() {
+        return (long) maxChunks * chunkSize;
+    }
+
+    synchronized long getAllocatedBytes() {
+        return (long) allocatedChunks * chunkSize;
+    }
+
+    /**
+     * @return The number of bytes taken by records that were not drained yet or whose drain was not committed.
+     */
+    long getUsedBytes() {
+        return usedBytes;
+    }
+
+    private static class Chunk {
+        private final ByteBuffer buffer;
+        private int recordCount = 0;
+        private int size = 0;
+
+        Chunk(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void reset() {
+            buffer.clear();
+            recordCount = 0;
+            size = 0;
+        }
+    }
+
+    private abstract static class FieldCodec {
+        protected final String name;
+        protected final GetterAccessor accessor;
+
+        FieldCodec(final String name, final GetterAccessor accessor) {
+            this.name = name;
+            this.accessor = accessor;
+        }
+
+        abstract void encode(Object event, ByteBuffer record);
+
+        abstract void decode(ByteBuffer record, FieldSink sink);
+    }
+
+    private static class LongCodec extends FieldCodec {
+        LongCodec(final String name, final GetterAccessor accessor) {
+            super(name, accessor);
+        }
+
+        @Override
+        void encode(final Object event, final ByteBuffer record) {
+            record.putLong(accessor.getLong(event));
+        }
+
+        @Override
+        void decode(final ByteBuffer record, final FieldSink sink) {
+            sink.putLong(name, record.getLong());
+        }
+    }
+
+    private static class DoubleCodec extends FieldCodec {
+        DoubleCodec(final String name, final GetterAccessor accessor) {
+            super(name, accessor);
+        }
+
+        @Override
+        void encode(final Object event, final ByteBuffer record) {
+            record.putDouble(accessor.getDouble(event));
+        }
+
+        @Override
+        void decode(final ByteBuffer record, final FieldSink sink) {
+            sink.putDouble(name, record.getDouble());
+        }
+    }
+
+    private static class ObjectCodec extends FieldCodec {
+        ObjectCodec(final String name, final GetterAccessor accessor) {
+            super(name, accessor);
+        }
+
+        @Override
+        void encode(final Object event, final ByteBuffer record) {
+            final Object value = accessor.get(event);
+            if (value == null) {
+                record.put(NULL);
+            } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                record.put(LONG).putLong(((Number) value).longValue());
+            } else if (value instanceof Number) {
+                record.put(DOUBLE).putDouble(((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                record.put(BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+            } else {
+                final byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                record.put(STRING).putInt(bytes.length).put(bytes);
+            }
+        }
+
+        @Override
+        void decode(final ByteBuffer record, final FieldSink sink) {
+            switch (record.get()) {
+                case LONG:
+                    sink.putLong(name, record.getLong());
+                    break;
+                case DOUBLE:
+                    sink.putDouble(name, record.getDouble());
+                    break;
+                case BOOLEAN:
+                    sink.put(name, record.get() != 0);
+                    break;
+                case STRING:
+                    final byte[] bytes = new byte[record.getInt()];
+                    record.get(bytes);
+                    sink.put(name, new String(bytes, StandardCharsets.UTF_8));
+                    break;
+                default:
+                    // null values are skipped
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.collect.ImmutableList;
+import net.monofraps.influxmetrics.fields.FieldSink;
+import net.monofraps.influxmetrics.reflection.GetterAccessor;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores buffered events column by column, one array per field, indexed by the slot of an {@link EventRingBuffer}.
+ * <p>
+ * int and long fields are stored in a long[], float and double fields in a double[], so buffering an event does not
+ * box or allocate anything for primitive fields. Strings are interned per column, so events repeating the same values
+ * share a single instance. Field names are stored once per column instead of once per event, and per-event tags as
+ * the id of their tag set (see {@link EventTagSets}).
+ */
+class EventColumns {
+    private static final long FAILED = Long.MIN_VALUE;
+    private static final int MAX_INTERNED_STRINGS = 1024;
+
+    private final long[] timestamps;
+    private final int[] tagSetIds;
+    private final List<Column> columns;
+
+    /**
+     * @param withTagSets Whether events have per-event tags.
+     */
+    EventColumns(final Collection<Method> getters, final int capacity, final boolean withTagSets) {
+        this.timestamps = new long[capacity];
+        this.tagSetIds = withTagSets ? new int[capacity] : null;
+
+        final ImmutableList.Builder<Column> columns = ImmutableList.builder();
+        for (Method getter : getters) {
+            final String name = getter.getName().substring(3);
+            final GetterAccessor accessor = GetterAccessor.forGetter(getter);
+            final Class<?> type = getter.getReturnType();
+
+            if (type == long.class || type == int.class) {
+                columns.add(new LongColumn(name, accessor, capacity));
+            } else if (type == double.class || type == float.class) {
+                columns.add(new DoubleColumn(name, accessor, capacity));
+            } else if (type == String.class) {
+                columns.add(new StringColumn(name, accessor, capacity));
+            } else {
+                columns.add(new ObjectColumn(name, accessor, capacity));
+            }
+        }
+        this.columns = columns.build();
+    }
+
+    /**
+     * Reads all fields of `event` into `slot`.
+     */
+    void write(final int slot, final Object event, final long timestamp, final int tagSetId) {
+        for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).write(slot, event);
+        }
+        timestamps[slot] = timestamp;
+        if (tagSetIds != null) {
+            tagSetIds[slot] = tagSetId;
+        }
+    }
+
+    /**
+     * Marks `slot` as failed, e.g. because a getter threw while writing it. Failed slots are skipped when read.
+     */
+    void markFailed(final int slot) {
+        timestamps[slot] = FAILED;
+    }
+
+    /**
+     * @return False if writing the event in `slot` failed.
+     */
+    boolean isValid(final int slot) {
+        return timestamps[slot] != FAILED;
+    }
+
+    long getTimestamp(final int slot) {
+        return timestamps[slot];
+    }
+
+    int getTagSetId(final int slot) {
+        return tagSetIds != null ? tagSetIds[slot] : 0;
+    }
+
+    /**
+     * Writes the fields of the event in `slot` into `sink`. Null values are skipped.
+     */
+    void writeTo(final int slot, final FieldSink sink) {
+        for (Column column : columns) {
+            column.writeTo(slot, sink);
+        }
+    }
+
+    /**
+     * Copies the event in `slot` into `targetSlot` of `target`, which must have been created for the same getters.
+     */
+    void copyTo(final int slot, final EventColumns target, final int targetSlot) {
+        for (int i = 0; i < columns.size(); i++) {
+            columns.get(i).copyTo(slot, target.columns.get(i), targetSlot);
+        }
+        target.timestamps[targetSlot] = timestamps[slot];
+        if (tagSetIds != null) {
+            target.tagSetIds[targetSlot] = tagSetIds[slot];
+        }
+    }
+
+    /**
+     * Drops the references held by `slot`.
+     */
+    void clear(final int slot) {
+        for (Column column : columns) {
+            column.clear(slot);
+        }
+    }
+
+    private abstract static class Column {
+        protected final String name;
+        protected final GetterAccessor accessor;
+
+        Column(final String name, final GetterAccessor accessor) {
+            this.name = name;
+            this.accessor = accessor;
+        }
+
+        abstract void write(int slot, Object event);
+
+        abstract void writeTo(int slot, FieldSink sink);
+
+        abstract void copyTo(int slot, Column target, int targetSlot);
+
+        void clear(final int slot) {
+        }
+    }
+
+    private static class LongColumn extends Column {
+        private final long[] values;
+
+        LongColumn(final String name, final GetterAccessor accessor, final int capacity) {
+            super(name, accessor);
+            this.values = new long[capacity];
+        }
+
+        @Override
+        void write(final int slot, final Object event) {
+            values[slot] = accessor.getLong(event);
+        }
+
+        @Override
+        void writeTo(final int slot, final FieldSink sink) {
+            sink.putLong(name, values[slot]);
+        }
+
+        @Override
+        void copyTo(final int slot, final Column target, final int targetSlot) {
+            ((LongColumn) target).values[targetSlot] = values[slot];
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+        private final double[] values;
+
+        DoubleColumn(final String name, final GetterAccessor accessor, final int capacity) {
+            super(name, accessor);
+            this.values = new double[capacity];
+        }
+
+        @Override
+        void write(final int slot, final Object event) {
+            values[slot] = accessor.getDouble(event);
+        }
+
+        @Override
+        void writeTo(final int slot, final FieldSink sink) {
+            sink.putDouble(name, values[slot]);
+        }
+
+        @Override
+        void copyTo(final int slot, final Column target, final int targetSlot) {
+            ((DoubleColumn) target).values[targetSlot] = values[slot];
+        }
+    }
+
+    private static class ObjectColumn extends Column {
+        protected final Object[] values;
+
+        ObjectColumn(final String name, final GetterAccessor accessor, final int capacity) {
+            super(name, accessor);
+            this.values = new Object[capacity];
+        }
+
+        @Override
+        void write(final int slot, final Object event) {
+            values[slot] = accessor.get(event);
+        }
+
+        @Override
+        void writeTo(final int slot, final FieldSink sink) {
+            sink.put(name, values[slot]);
+        }
+
+        @Override
+        void copyTo(final int slot, final Column target, final int targetSlot) {
+            ((ObjectColumn) target).values[targetSlot] = values[slot];
+        }
+
+        @Override
+        void clear(final int slot) {
+            values[slot] = null;
+        }
+    }
+
+    private static class StringColumn extends ObjectColumn {
+        private final ConcurrentHashMap<String, String> internedValues = new ConcurrentHashMap<>();
+
+        StringColumn(final String name, final GetterAccessor accessor, final int capacity) {
+            super(name, accessor, capacity);
+        }
+
+        @Override
+        void write(final int slot, final Object event) {
+            values[slot] = intern((String) accessor.get(event));
+        }
+
+        private String intern(final String value) {
+            if (value == null) {
+                return null;
+            }
+
+            final String interned = internedValues.get(value);
+            if (interned != null) {
+                return interned;
+            }
+            // stop interning high cardinality columns rather than growing without bounds
+            if (internedValues.size() < MAX_INTERNED_STRINGS) {
+                internedValues.putIfAbsent(value, value);
+            }
+            return value;
+        }
+    }
+}
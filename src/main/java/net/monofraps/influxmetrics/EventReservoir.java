@@ -0,0 +1,63 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.base.Preconditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps a uniform random sample of fixed size of the events committed per report interval (reservoir sampling).
+ * <p>
+ * The slot of an event is chosen before its data point is created, so events that are not sampled cost an increment
+ * and a random number. An event racing with a report may end up in either interval.
+ */
+class EventReservoir {
+    private final AtomicReferenceArray<DataPoint> slots;
+    private final AtomicLong offered = new AtomicLong();
+
+    EventReservoir(final int size) {
+        Preconditions.checkArgument(size > 0, "size must be positive");
+        this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * @return The slot to store the committed event's data point in, or -1 if the event is not sampled.
+     */
+    int selectSlot() {
+        final long count = offered.incrementAndGet();
+        if (count <= slots.length()) {
+            return (int) count - 1;
+        }
+
+        final long candidate = ThreadLocalRandom.current().nextLong(count);
+        return candidate < slots.length() ? (int) candidate : -1;
+    }
+
+    void store(final int slot, final DataPoint dataPoint) {
+        slots.set(slot, dataPoint);
+    }
+
+    /**
+     * Takes the sample of the current interval and starts a new one.
+     *
+     * @param sampleRateField The name of the field to store the interval's sample rate in.
+     */
+    List<DataPoint> collect(final String sampleRateField) {
+        final long offeredCount = offered.getAndSet(0);
+        final double sampleRate = offeredCount <= slots.length() ? 1 : (double) slots.length() / offeredCount;
+
+        final List<DataPoint> dataPoints = new ArrayList<>(slots.length());
+        for (int i = 0; i < slots.length(); i++) {
+            final DataPoint dataPoint = slots.getAndSet(i, null);
+            if (dataPoint != null) {
+                dataPoint.getFieldValues().putDouble(sampleRateField, sampleRate);
+                dataPoints.add(dataPoint);
+            }
+        }
+
+        return dataPoints;
+    }
+}
@@ -0,0 +1,143 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sequences the slots of a bounded, lock-free ring buffer for many producers. The elements themselves are stored by
+ * the owner of the ring buffer, e.g. in one array per field, indexed by slot.
+ * <p>
+ * Every slot carries a sequence number telling whether it is free for the producer of a given position or holds an
+ * element published for the consumer of that position. Producers claim positions with a CAS on the tail, write their
+ * element and publish it; writes made before publishing are visible to the consumer of the slot. Consumers claim whole
+ * runs of published slots with a single CAS on the head, so draining a batch costs one CAS instead of one per element.
+ * Consumers may be concurrent as well, which allows producers to discard the oldest element when the buffer is full.
+ * <p>
+ * Claiming and publishing a slot does not allocate.
+ */
+class EventRingBuffer {
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Receives the slots claimed by a consumer. The slot is released once the call returns.
+     */
+    interface SlotConsumer {
+        void accept(int slot);
+    }
+
+    /**
+     * @param capacity The maximum number of elements, rounded up to the next power of two and at least 2. A single slot
+     *                 cannot tell a published element from a free slot of the next lap.
+     */
+    EventRingBuffer(final int capacity) {
+        Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity must be between 1 and 2^30");
+
+        this.capacity = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        this.mask = this.capacity - 1;
+        this.sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The approximate number of claimed slots.
+     */
+    int size() {
+        return (int) Math.max(0, Math.min(capacity, tail.get() - head.get()));
+    }
+
+    /**
+     * Claims the next free slot. The claimed slot must be published with {@link #publish(long)}, even if writing the
+     * element failed, since consumers cannot pass an unpublished slot.
+     *
+     * @return The claimed position, or -1 if the buffer is full.
+     */
+    long tryClaim() {
+        while (true) {
+            final long position = tail.get();
+            final long sequence = sequences.get(slot(position));
+
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (sequence < position) {
+                // the slot still holds the element of the previous lap
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Claims `count` consecutive free slots with a single CAS. Each claimed slot must be published.
+     *
+     * @return The first claimed position, or -1 if fewer than `count` slots are free.
+     */
+    long tryClaim(final int count) {
+        retry:
+        while (true) {
+            final long position = tail.get();
+            for (int i = 0; i < count; i++) {
+                final long sequence = sequences.get(slot(position + i));
+                if (sequence < position + i) {
+                    return -1;
+                } else if (sequence > position + i) {
+                    // another producer claimed the slot in the meantime
+                    continue retry;
+                }
+            }
+
+            if (tail.compareAndSet(position, position + count)) {
+                return position;
+            }
+        }
+    }
+
+    int slot(final long position) {
+        return (int) position & mask;
+    }
+
+    void publish(final long position) {
+        sequences.set(slot(position), position + 1);
+    }
+
+    /**
+     * Passes up to `maxElements` published slots to `consumer`, oldest first. Stops at the first slot that was claimed
+     * by a producer but not published yet.
+     *
+     * @return The number of slots consumed.
+     */
+    int drain(final int maxElements, final SlotConsumer consumer) {
+        while (true) {
+            final long position = head.get();
+
+            int count = 0;
+            while (count < maxElements && sequences.get(slot(position + count)) == position + count + 1) {
+                count++;
+            }
+            if (count == 0) {
+                return 0;
+            }
+
+            if (head.compareAndSet(position, position + count)) {
+                for (int i = 0; i < count; i++) {
+                    final int slot = slot(position + i);
+                    consumer.accept(slot);
+                    sequences.set(slot, position + i + capacity);
+                }
+                return count;
+            }
+        }
+    }
+}
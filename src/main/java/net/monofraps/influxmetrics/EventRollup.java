@@ -0,0 +1,346 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.collect.ImmutableList;
+import net.monofraps.influxmetrics.fields.QuantileSketch;
+import net.monofraps.influxmetrics.reflection.GetterAccessor;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates the numeric fields of committed events into one data point per report interval. Event series with
+ * per-event tags keep one rollup per tag set.
+ * <p>
+ * Every numeric getter is reduced to its sum, min and max, and optionally the 50th, 90th and 99th percentile (with a
+ * relative error of 1%, values below zero count as zero, see {@link QuantileSketch}). Getters of other types are
+ * ignored. Recording an event is lock-free and does not allocate, unless a getter returns a boxed number.
+ * <p>
+ * All aggregates of an interval are kept in one {@link Interval}, which is swapped for a spare one on collection, so an
+ * event counts towards the count, sums and extremes of the same interval. The collecting thread waits for events that
+ * were being recorded into the old interval while it was swapped.
+ * <p>
+ * Fields:
+ * count - the number of events committed in the interval
+ * `getter`_sum, `getter`_min, `getter`_max - per numeric getter
+ * `getter`_p50, `getter`_p90, `getter`_p99 - per numeric getter, if percentiles are enabled
+ */
+class EventRollup {
+    private static final double[] PERCENTILES = {50, 90, 99};
+    private static final String[] PERCENTILE_SUFFIXES = {"_p50", "_p90", "_p99"};
+
+    private final List<NumericRollup> rollups;
+    private final List<String> fieldNames;
+    private volatile Interval currentInterval;
+    private Interval spareInterval;
+
+    EventRollup(final Collection<Method> getters, final boolean withPercentiles) {
+        final ImmutableList.Builder<NumericRollup> rollups = ImmutableList.builder();
+        for (Method getter : getters) {
+            final Class<?> type = getter.getReturnType();
+            final String name = getter.getName().substring(3);
+
+            if (isIntegral(type)) {
+                rollups.add(new LongRollup(name, GetterAccessor.forGetter(getter), type.isPrimitive(), withPercentiles));
+            } else if (isNumeric(type)) {
+                rollups.add(new DoubleRollup(name, GetterAccessor.forGetter(getter), type.isPrimitive(), withPercentiles));
+            }
+        }
+
+        this.rollups = rollups.build();
+        this.fieldNames = fieldNamesFor(getters, withPercentiles);
+        this.currentInterval = new Interval(this.rollups);
+        this.spareInterval = new Interval(this.rollups);
+    }
+
+    /**
+     * @return The names of the fields reported by a rollup of `getters`, without creating one.
+     */
+    static List<String> fieldNamesFor(final Collection<Method> getters, final boolean withPercentiles) {
+        final ImmutableList.Builder<String> fieldNames = ImmutableList.<String>builder().add("count");
+        for (Method getter : getters) {
+            if (!isNumeric(getter.getReturnType())) {
+                continue;
+            }
+
+            final String name = getter.getName().substring(3);
+            fieldNames.add(name + "_sum", name + "_min", name + "_max");
+            if (withPercentiles) {
+                for (String suffix : PERCENTILE_SUFFIXES) {
+                    fieldNames.add(name + suffix);
+                }
+            }
+        }
+        return fieldNames.build();
+    }
+
+    private static boolean isNumeric(final Class<?> type) {
+        return type.isPrimitive() ? type != boolean.class && type != char.class : Number.class.isAssignableFrom(type);
+    }
+
+    private static boolean isIntegral(final Class<?> type) {
+        return type == long.class || type == int.class || type == short.class || type == byte.class
+                || type == Long.class || type == Integer.class || type == Short.class || type == Byte.class;
+    }
+
+    List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    void record(final Object event) {
+        while (true) {
+            final Interval interval = currentInterval;
+            interval.recorders.increment();
+            try {
+                // the interval may have been swapped before this recorder was registered with it
+                if (interval != currentInterval) {
+                    continue;
+                }
+
+                for (int i = 0; i < rollups.size(); i++) {
+                    rollups.get(i).record(event, interval.accumulators[i]);
+                }
+                interval.count.increment();
+                return;
+            } finally {
+                interval.recorders.decrement();
+            }
+        }
+    }
+
+    /**
+     * Takes the aggregates of the current interval and starts a new one.
+     *
+     * @param timestamp The time of the data point in milliseconds.
+     * @param tags      The tags of the data point.
+     * @return The interval's data point, or null if no event was committed.
+     */
+    synchronized DataPoint collect(final long timestamp, final Map<String, String> tags) {
+        final Interval interval = swapInterval();
+        // collecting resets the accumulators, so the interval is reused by the next swap
+        spareInterval = interval;
+        final long intervalCount = interval.count.sumThenReset();
+        if (intervalCount == 0) {
+            return null;
+        }
+
+        final FieldValues fieldValues = new FieldValues(fieldNames.size());
+        fieldValues.putLong("count", intervalCount);
+        for (int i = 0; i < rollups.size(); i++) {
+            rollups.get(i).collect(interval.accumulators[i], fieldValues);
+        }
+
+        return new DataPoint(timestamp, TimeUnit.MILLISECONDS, fieldValues, tags);
+    }
+
+    /**
+     * Starts a new interval with the spare interval and waits until no event is being recorded into the previous one
+     * anymore.
+     *
+     * @return The previous interval.
+     */
+    private Interval swapInterval() {
+        final Interval interval = currentInterval;
+        currentInterval = spareInterval;
+        while (interval.recorders.sum() != 0) {
+            Thread.yield();
+        }
+        return interval;
+    }
+
+    /**
+     * The aggregates of one interval: the event count and one accumulator per numeric getter.
+     */
+    private static class Interval {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder recorders = new LongAdder();
+        private final Accumulator[] accumulators;
+
+        Interval(final List<NumericRollup> rollups) {
+            this.accumulators = new Accumulator[rollups.size()];
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i] = rollups.get(i).newAccumulator();
+            }
+        }
+    }
+
+    private interface Accumulator {
+    }
+
+    private abstract static class NumericRollup {
+        protected final String name;
+        protected final GetterAccessor accessor;
+        protected final boolean primitive;
+        protected final boolean withPercentiles;
+
+        NumericRollup(final String name, final GetterAccessor accessor, final boolean primitive, final boolean withPercentiles) {
+            this.name = name;
+            this.accessor = accessor;
+            this.primitive = primitive;
+            this.withPercentiles = withPercentiles;
+        }
+
+        abstract Accumulator newAccumulator();
+
+        abstract void record(Object event, Accumulator accumulator);
+
+        /**
+         * Writes the aggregates of `accumulator` into `fieldValues` and resets it.
+         */
+        abstract void collect(Accumulator accumulator, FieldValues fieldValues);
+
+        protected void collectPercentiles(final QuantileSketch sketch, final FieldValues fieldValues) {
+            if (sketch == null) {
+                return;
+            }
+
+            final QuantileSketch.State state = sketch.getStateAndReset();
+            if (state.getCount() == 0) {
+                return;
+            }
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                fieldValues.putDouble(name + PERCENTILE_SUFFIXES[i], state.getValueAtPercentile(PERCENTILES[i]));
+            }
+        }
+    }
+
+    private static class LongRollup extends NumericRollup {
+        LongRollup(final String name, final GetterAccessor accessor, final boolean primitive, final boolean withPercentiles) {
+            super(name, accessor, primitive, withPercentiles);
+        }
+
+        @Override
+        Accumulator newAccumulator() {
+            return new LongAccumulator(withPercentiles ? new QuantileSketch(name) : null);
+        }
+
+        @Override
+        void record(final Object event, final Accumulator accumulator) {
+            final long value;
+            if (primitive) {
+                value = accessor.getLong(event);
+            } else {
+                final Number boxedValue = (Number) accessor.get(event);
+                if (boxedValue == null) {
+                    return;
+                }
+                value = boxedValue.longValue();
+            }
+
+            final LongAccumulator longAccumulator = (LongAccumulator) accumulator;
+            longAccumulator.sum.add(value);
+
+            long currentMin;
+            while (value < (currentMin = longAccumulator.min.get()) && !longAccumulator.min.compareAndSet(currentMin, value)) {
+            }
+
+            long currentMax;
+            while (value > (currentMax = longAccumulator.max.get()) && !longAccumulator.max.compareAndSet(currentMax, value)) {
+            }
+
+            if (longAccumulator.sketch != null) {
+                longAccumulator.sketch.record(value);
+            }
+        }
+
+        @Override
+        void collect(final Accumulator accumulator, final FieldValues fieldValues) {
+            final LongAccumulator longAccumulator = (LongAccumulator) accumulator;
+            final long intervalMin = longAccumulator.min.getAndSet(Long.MAX_VALUE);
+            final long intervalMax = longAccumulator.max.getAndSet(Long.MIN_VALUE);
+
+            fieldValues.putLong(name + "_sum", longAccumulator.sum.sumThenReset());
+            // all values may have been null
+            if (intervalMin <= intervalMax) {
+                fieldValues.putLong(name + "_min", intervalMin);
+                fieldValues.putLong(name + "_max", intervalMax);
+            }
+            collectPercentiles(longAccumulator.sketch, fieldValues);
+        }
+    }
+
+    private static class LongAccumulator implements Accumulator {
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+        private final QuantileSketch sketch;
+
+        LongAccumulator(final QuantileSketch sketch) {
+            this.sketch = sketch;
+        }
+    }
+
+    private static class DoubleRollup extends NumericRollup {
+        DoubleRollup(final String name, final GetterAccessor accessor, final boolean primitive, final boolean withPercentiles) {
+            super(name, accessor, primitive, withPercentiles);
+        }
+
+        @Override
+        Accumulator newAccumulator() {
+            return new DoubleAccumulator(withPercentiles ? new QuantileSketch(name) : null);
+        }
+
+        @Override
+        void record(final Object event, final Accumulator accumulator) {
+            final double value;
+            if (primitive) {
+                value = accessor.getDouble(event);
+            } else {
+                final Number boxedValue = (Number) accessor.get(event);
+                if (boxedValue == null) {
+                    return;
+                }
+                value = boxedValue.doubleValue();
+            }
+            if (Double.isNaN(value)) {
+                return;
+            }
+
+            final DoubleAccumulator doubleAccumulator = (DoubleAccumulator) accumulator;
+            doubleAccumulator.sum.add(value);
+
+            long currentMin;
+            while (value < Double.longBitsToDouble(currentMin = doubleAccumulator.minBits.get()) && !doubleAccumulator.minBits.compareAndSet(currentMin, Double.doubleToRawLongBits(value))) {
+            }
+
+            long currentMax;
+            while (value > Double.longBitsToDouble(currentMax = doubleAccumulator.maxBits.get()) && !doubleAccumulator.maxBits.compareAndSet(currentMax, Double.doubleToRawLongBits(value))) {
+            }
+
+            if (doubleAccumulator.sketch != null) {
+                doubleAccumulator.sketch.record(value);
+            }
+        }
+
+        @Override
+        void collect(final Accumulator accumulator, final FieldValues fieldValues) {
+            final DoubleAccumulator doubleAccumulator = (DoubleAccumulator) accumulator;
+            final double intervalMin = Double.longBitsToDouble(doubleAccumulator.minBits.getAndSet(Double.doubleToRawLongBits(Double.POSITIVE_INFINITY)));
+            final double intervalMax = Double.longBitsToDouble(doubleAccumulator.maxBits.getAndSet(Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY)));
+
+            fieldValues.putDouble(name + "_sum", doubleAccumulator.sum.sumThenReset());
+            // all values may have been null or NaN
+            if (intervalMin <= intervalMax) {
+                fieldValues.putDouble(name + "_min", intervalMin);
+                fieldValues.putDouble(name + "_max", intervalMax);
+            }
+            collectPercentiles(doubleAccumulator.sketch, fieldValues);
+        }
+    }
+
+    private static class DoubleAccumulator implements Accumulator {
+        private final DoubleAdder sum = new DoubleAdder();
+        private final AtomicLong minBits = new AtomicLong(Double.doubleToRawLongBits(Double.POSITIVE_INFINITY));
+        private final AtomicLong maxBits = new AtomicLong(Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY));
+        private final QuantileSketch sketch;
+
+        DoubleAccumulator(final QuantileSketch sketch) {
+            this.sketch = sketch;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides which committed events of an {@link EventSeries} are turned into data points.
+ * <p>
+ * The decision is made before any getter of the event is invoked, so an event that is sampled out costs a random
+ * number or a clock read and nothing else.
+ */
+abstract class EventSampler {
+    /**
+     * @return True if the event being committed should be kept.
+     */
+    abstract boolean sample();
+
+    /**
+     * Called once per report.
+     *
+     * @return The fraction of events kept since the last report, i.e. the factor to divide counts by to scale them back
+     * up, or 1 if no event was committed.
+     */
+    abstract double collectSampleRate();
+
+    /**
+     * Keeps every event with the given probability.
+     */
+    static EventSampler withProbability(final double probability) {
+        Preconditions.checkArgument(probability > 0 && probability <= 1, "probability must be in (0, 1]");
+        return new ProbabilitySampler(probability);
+    }
+
+    /**
+     * Keeps at most `eventsPerSecond` events per second, with bursts of up to one second worth of events.
+     */
+    static EventSampler withRateLimit(final long eventsPerSecond) {
+        return withRateLimit(eventsPerSecond, Ticker.systemTicker());
+    }
+
+    /**
+     * Like {@link #withRateLimit(long)}, but reads the time from the given ticker.
+     */
+    static EventSampler withRateLimit(final long eventsPerSecond, final Ticker ticker) {
+        Preconditions.checkArgument(eventsPerSecond > 0, "eventsPerSecond must be positive");
+        return new RateLimitSampler(eventsPerSecond, ticker);
+    }
+
+    private static class ProbabilitySampler extends EventSampler {
+        private final double probability;
+
+        private ProbabilitySampler(final double probability) {
+            this.probability = probability;
+        }
+
+        @Override
+        boolean sample() {
+            return probability >= 1 || ThreadLocalRandom.current().nextDouble() < probability;
+        }
+
+        @Override
+        double collectSampleRate() {
+            return probability;
+        }
+    }
+
+    /**
+     * A token bucket implemented as generic cell rate algorithm: instead of a token count, it keeps the theoretical
+     * arrival time of the next event, which a single CAS advances by the emission interval.
+     */
+    private static class RateLimitSampler extends EventSampler {
+        private final long emissionIntervalNanos;
+        private final long burstToleranceNanos = TimeUnit.SECONDS.toNanos(1);
+        private final Ticker ticker;
+        private final AtomicLong theoreticalArrivalTime;
+        private final LongAdder offered = new LongAdder();
+        private final LongAdder kept = new LongAdder();
+
+        private RateLimitSampler(final long eventsPerSecond, final Ticker ticker) {
+            this.emissionIntervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(1) / eventsPerSecond);
+            this.ticker = ticker;
+            this.theoreticalArrivalTime = new AtomicLong(ticker.read());
+        }
+
+        @Override
+        boolean sample() {
+            offered.increment();
+
+            final long now = ticker.read();
+            long arrivalTime;
+            long nextArrivalTime;
+            do {
+                arrivalTime = theoreticalArrivalTime.get();
+                nextArrivalTime = Math.max(arrivalTime, now) + emissionIntervalNanos;
+                if (nextArrivalTime - now > burstToleranceNanos) {
+                    return false;
+                }
+            } while (!theoreticalArrivalTime.compareAndSet(arrivalTime, nextArrivalTime));
+
+            kept.increment();
+            return true;
+        }
+
+        @Override
+        double collectSampleRate() {
+            final long keptCount = kept.sumThenReset();
+            final long offeredCount = offered.sumThenReset();
+            return offeredCount == 0 ? 1 : (double) keptCount / offeredCount;
+        }
+    }
+}
@@ -1,37 +1,135 @@
 package net.monofraps.influxmetrics;
 
+import com.google.common.base.Preconditions;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import net.monofraps.influxmetrics.fields.FieldSink;
+import net.monofraps.influxmetrics.fields.IMeasurementField;
+import net.monofraps.influxmetrics.fields.LongGauge;
+import net.monofraps.influxmetrics.fields.StripedCounter;
+import net.monofraps.influxmetrics.reflection.GetterAccessor;
 import net.monofraps.influxmetrics.reflection.ReflectionUtils;
+import org.influxdb.dto.LineProtocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 
 /**
  * An EventSeries is a special type of InfluxSeries which creates data points at irregular intervals.
- *
+ * <p>
+ * Committed events are buffered in a bounded ring buffer until the next report, stored column by column (see
+ * {@link EventColumns}) and encoded straight to line protocol by {@link #drainLineProtocol(String, Collection)}. If
+ * the buffer is full, the {@link OverflowPolicy} decides which event is dropped; dropped events are counted by
+ * {@link #getDroppedEvents()}.
+ * <p>
+ * In rollup mode (see {@link Builder#withRollup(boolean)}), committed events are not buffered but aggregated in place,
+ * and the series reports a single data point per interval and tag set, see {@link EventRollup}.
+ * <p>
+ * Sampled series (see {@link Builder#withSampling(double)}, {@link Builder#withRateLimit(long)} and
+ * {@link Builder#withReservoir(int)}) decide whether to keep an event before invoking any of its getters. Every point
+ * of a sampled series carries the fraction of events kept in the field {@value #SAMPLE_RATE_FIELD}, so counts can be
+ * scaled back up by dividing by it.
+ * <p>
+ * Getters annotated with {@link EventTag} become per-event tags instead of fields. Every distinct combination of tag
+ * values is interned once (see {@link EventTagSets}), so buffered events only store the id of their tag set. The number
+ * of combinations is limited by {@link Builder#withMaxTagSets(int)}.
+ * <p>
+ * With thread-local staging (see {@link Builder#withThreadLocalStaging(int)}), each committing thread first stages
+ * events in a small buffer of its own and publishes them to the shared buffer in batches, once the staging buffer is
+ * full or when the series is drained. Staging buffers of threads that terminated are drained as well.
+ * <p>
+ * With an off-heap buffer (see {@link Builder#withOffHeapBuffer(int, long, OverflowPolicy)}), committed events are
+ * encoded into binary records outside of the Java heap instead, see {@link EventArena}, so that events piling up while
+ * InfluxDB is unreachable do not affect garbage collection.
  *
  * @param <T> Event model type.
  */
 public class EventSeries<T> implements InfluxSeries {
+    public static final int DEFAULT_BUFFER_CAPACITY = 8192;
+    public static final int DEFAULT_MAX_TAG_SETS = 1024;
+    public static final String SAMPLE_RATE_FIELD = "sample_rate";
+
     private static final Logger logger = LoggerFactory.getLogger(EventSeries.class);
+    private static final int MAX_DRAIN_BATCH_SIZE = 1024;
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int MAX_DROP_OLDEST_ATTEMPTS = 16;
+
     private final String measurementName;
     private final Map<String, String> tags;
-    private final BlockingQueue<DataPoint> events = new LinkedBlockingQueue<>();
+    private final EventRingBuffer events;
+    private final ImmutableCollection<Method> columnGetters;
+    private final EventColumns columns;
+    private final EventRingBuffer.SlotConsumer discardSlot;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final StripedCounter droppedEvents = new StripedCounter("count");
     private final ImmutableCollection<GetterField> fields;
+    private final EventTagSets tagSets;
+    private final ImmutableCollection<Method> rollupGetters;
+    private final boolean rollupPercentiles;
+    private final List<String> rollupFieldNames;
+    private volatile EventRollup[] rollups = new EventRollup[0];
+    private final EventSampler sampler;
+    private final EventReservoir reservoir;
+    private final int stagingCapacity;
+    private final Queue<StagingBuffer> stagingBuffers = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<StagingBuffer> stagingBuffer = ThreadLocal.withInitial(this::createStagingBuffer);
+    private final EventArena arena;
+    private volatile boolean active = false;
+
+    /**
+     * Decides what happens to an event committed while the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drop the committed event.
+         */
+        DROP_NEWEST,
+        /**
+         * Drop the oldest buffered event to make room for the committed event.
+         */
+        DROP_OLDEST,
+        /**
+         * Wait up to the configured timeout for the reporter to make room, then drop the committed event.
+         */
+        BLOCK
+    }
 
     protected EventSeries(String measurementName, List<MetricTag> tags, ImmutableCollection<Method> fields) {
-        this.measurementName = measurementName;
-        this.tags = tags.stream().collect(Collectors.toMap(MetricTag::getTagName, MetricTag::getTagValue));
+        this(measurementName, CompactTags.of(tags), fields, ImmutableList.of(), DEFAULT_MAX_TAG_SETS, DEFAULT_BUFFER_CAPACITY, OverflowPolicy.DROP_NEWEST, 0, TimeUnit.MILLISECONDS, false, false, null, null, 0, null);
+    }
+
+    protected EventSeries(String measurementName, Map<String, String> tags, ImmutableCollection<Method> fields, ImmutableCollection<Method> tagGetters, int maxTagSets, int bufferCapacity, OverflowPolicy overflowPolicy, long blockTimeout, TimeUnit blockTimeoutUnit, boolean rollup, boolean rollupPercentiles, EventSampler sampler, EventReservoir reservoir, int stagingCapacity, EventArena arena) {
+        this.measurementName = CompactTags.intern(measurementName);
+        this.tags = CompactTags.of(tags);
+        this.tagSets = new EventTagSets(tagGetters, maxTagSets);
+        // events of an off-heap series bypass the ring buffer, which is kept as small as possible
+        this.events = new EventRingBuffer(arena != null ? 1 : bufferCapacity);
+        this.columnGetters = fields;
+        this.columns = new EventColumns(fields, events.capacity(), !tagGetters.isEmpty());
+        this.discardSlot = columns::clear;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutNanos = blockTimeoutUnit.toNanos(blockTimeout);
+        this.rollupGetters = rollup ? fields : null;
+        this.rollupPercentiles = rollupPercentiles;
+        this.rollupFieldNames = rollup ? EventRollup.fieldNamesFor(fields, rollupPercentiles) : null;
+        this.sampler = sampler;
+        this.reservoir = reservoir;
+        this.stagingCapacity = stagingCapacity;
+        this.arena = arena;
 
         this.fields = ImmutableList.copyOf(fields.stream().map(fieldGetter -> new GetterField(fieldGetter.getName().substring(3), fieldGetter)).collect(Collectors.toList()));
     }
@@ -39,6 +137,7 @@ public class EventSeries<T> implements InfluxSeries {
     /**
      * Creates an EventSeries builder using the event model T (klass).
      * The method collects all public getters defined by `klass` and superclasses of `klass` as fields of the event model.
+     * Getters annotated with {@link EventTag} are collected as per-event tags instead.
      * @param klass The class to scan for event fields.
      * @param name The event series' name.
      * @param <T> The event model type.
@@ -47,26 +146,254 @@ public class EventSeries<T> implements InfluxSeries {
     public static <T> EventSeries.Builder<T> fromPojo(Class<T> klass, String name) {
         final List<Field> deepFields = ReflectionUtils.getDeepFields(klass);
         final List<Method> methods = ReflectionUtils.getPublicGetters(klass);
-        final List<Method> fields = methods.stream().filter(m -> deepFields.stream().filter(f -> m.getName().substring(3).equalsIgnoreCase(f.getName())).findAny().isPresent()).collect(Collectors.toList());
+        final List<Method> tagGetters = methods.stream().filter(m -> m.isAnnotationPresent(EventTag.class)).collect(Collectors.toList());
+        final List<Method> fields = methods.stream().filter(m -> !m.isAnnotationPresent(EventTag.class)).filter(m -> deepFields.stream().filter(f -> m.getName().substring(3).equalsIgnoreCase(f.getName())).findAny().isPresent()).collect(Collectors.toList());
 
-        return new Builder<>(name, fields);
+        return new Builder<T>(name, fields).withTagGetters(tagGetters);
     }
 
     public void commitEvent(T event) {
+        markActive();
         try {
-            final Map<String, Object> fieldValues = new HashMap<>(fields.size(), 1f);
-            for (GetterField fieldGetter : fields) {
-                fieldValues.put(fieldGetter.getName(), fieldGetter.invoke(event));
+            if (rollupGetters != null) {
+                rollupFor(tagSets.resolve(event)).record(event);
+                return;
+            }
+
+            if (sampler != null && !sampler.sample()) {
+                return;
+            }
+
+            final int reservoirSlot = reservoir != null ? reservoir.selectSlot() : -1;
+            if (reservoir != null && reservoirSlot < 0) {
+                return;
             }
-            events.offer(new DataPoint(System.currentTimeMillis(), TimeUnit.MILLISECONDS, fieldValues));
-        } catch (IllegalAccessException | InvocationTargetException e) {
+
+            if (reservoir != null) {
+                // leave room for the sample rate
+                final FieldValues fieldValues = new FieldValues(fields.size() + 1);
+                for (GetterField fieldGetter : fields) {
+                    fieldGetter.writeTo(event, fieldValues);
+                }
+                reservoir.store(reservoirSlot, new DataPoint(System.currentTimeMillis(), TimeUnit.MILLISECONDS, fieldValues, tagSets.get(tagSets.resolve(event)).getTags()));
+                return;
+            }
+
+            final int tagSetId = tagSets.resolve(event);
+            if (arena != null) {
+                final int droppedRecords = arena.append(event, System.currentTimeMillis(), tagSetId);
+                if (droppedRecords > 0) {
+                    droppedEvents.inc(droppedRecords);
+                }
+                return;
+            }
+            if (stagingCapacity > 0) {
+                stagingBuffer.get().stage(event, tagSetId);
+                return;
+            }
+
+            final long position = claim(true);
+            if (position >= 0) {
+                write(position, event, tagSetId);
+            }
+        } catch (Exception e) {
             logger.error("Failed to get event field value", e);
         }
     }
 
+    /**
+     * Commits a batch of events. Without staging, sampling, rollups or an off-heap buffer, the buffer slots for the whole
+     * batch are claimed at once if the buffer has enough room.
+     */
+    public void commitEvents(Collection<? extends T> batch) {
+        markActive();
+        final boolean claimBatch = stagingCapacity == 0 && sampler == null && reservoir == null && rollupGetters == null && arena == null;
+        final long position = claimBatch && batch.size() <= events.capacity() ? events.tryClaim(batch.size()) : -1;
+        if (position < 0) {
+            batch.forEach(this::commitEvent);
+            return;
+        }
+
+        long nextPosition = position;
+        for (T event : batch) {
+            try {
+                resolveAndWrite(nextPosition++, event);
+            } catch (Exception e) {
+                logger.error("Failed to get event field value", e);
+            }
+        }
+    }
+
+    /**
+     * Writes `event` into the buffer slot at `position` and publishes it.
+     */
+    private void write(final long position, final T event, final int tagSetId) {
+        final int slot = events.slot(position);
+        try {
+            columns.write(slot, event, System.currentTimeMillis(), tagSetId);
+        } catch (RuntimeException | Error e) {
+            columns.markFailed(slot);
+            throw e;
+        } finally {
+            events.publish(position);
+        }
+    }
+
+    /**
+     * Resolves the tag set of `event` and writes it into the already claimed slot at `position`. The slot is published
+     * even if a tag getter throws, since draining stops at the first unpublished slot.
+     */
+    private void resolveAndWrite(final long position, final T event) {
+        final int tagSetId;
+        try {
+            tagSetId = tagSets.resolve(event);
+        } catch (RuntimeException | Error e) {
+            columns.markFailed(events.slot(position));
+            events.publish(position);
+            throw e;
+        }
+        write(position, event, tagSetId);
+    }
+
+    /**
+     * Releases the events of an off-heap buffer drained by the last report. Events buffered on the heap are released as
+     * soon as they are drained.
+     */
+    @Override
+    public void commitValueSets() {
+        if (arena != null) {
+            arena.commit();
+        }
+    }
+
+    /**
+     * Keeps the events of an off-heap buffer drained by the last report for the next report, see {@link EventArena}.
+     * Events buffered on the heap were released when they were drained and are lost.
+     */
+    @Override
+    public void rollbackValueSets() {
+        if (arena != null) {
+            arena.rollback();
+        }
+    }
+
+    private void markActive() {
+        // read before writing, so committing threads do not contend on the flag's cache line
+        if (!active) {
+            active = true;
+        }
+    }
+
+    @Override
+    public boolean pollActivity() {
+        final boolean wasActive = active;
+        if (wasActive) {
+            active = false;
+        }
+        return wasActive;
+    }
+
+    private EventRollup rollupFor(final int tagSetId) {
+        final EventRollup[] currentRollups = rollups;
+        if (tagSetId < currentRollups.length && currentRollups[tagSetId] != null) {
+            return currentRollups[tagSetId];
+        }
+
+        synchronized (this) {
+            EventRollup[] newRollups = rollups;
+            if (tagSetId >= newRollups.length) {
+                newRollups = Arrays.copyOf(newRollups, Math.min(Math.max(tagSetId + 1, newRollups.length * 2), tagSets.getMaxTagSets()));
+            }
+            if (newRollups[tagSetId] == null) {
+                newRollups[tagSetId] = new EventRollup(rollupGetters, rollupPercentiles);
+            }
+            // publishes the new rollup to readers of the volatile field
+            rollups = newRollups;
+            return newRollups[tagSetId];
+        }
+    }
+
+    /**
+     * Claims a buffer slot for a committed event according to the overflow policy.
+     *
+     * @param mayBlock False if the calling thread must not wait, e.g. because it is the one draining the buffer.
+     * @return The claimed position, or -1 if the event is dropped.
+     */
+    private long claim(final boolean mayBlock) {
+        long position = events.tryClaim();
+        if (position >= 0) {
+            return position;
+        }
+
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                long dropBackoffNanos = 1000;
+                for (int attempt = 0; attempt < MAX_DROP_OLDEST_ATTEMPTS; attempt++) {
+                    if (events.drain(1, discardSlot) == 1) {
+                        droppedEvents.inc();
+                    } else {
+                        // the oldest slot is claimed, but its event is still being written
+                        LockSupport.parkNanos(dropBackoffNanos);
+                        dropBackoffNanos = Math.min(dropBackoffNanos * 2, MAX_BACKOFF_NANOS);
+                    }
+                    if ((position = events.tryClaim()) >= 0) {
+                        return position;
+                    }
+                }
+                // drop the committed event instead of waiting any longer for the oldest one
+                droppedEvents.inc();
+                return -1;
+            case BLOCK:
+                if (!mayBlock) {
+                    droppedEvents.inc();
+                    return -1;
+                }
+                final long deadline = System.nanoTime() + blockTimeoutNanos;
+                long backoffNanos = 1000;
+                while (System.nanoTime() < deadline) {
+                    LockSupport.parkNanos(backoffNanos);
+                    if ((position = events.tryClaim()) >= 0) {
+                        return position;
+                    }
+                    backoffNanos = Math.min(backoffNanos * 2, MAX_BACKOFF_NANOS);
+                }
+                droppedEvents.inc();
+                return -1;
+            default:
+                droppedEvents.inc();
+                return -1;
+        }
+    }
+
+    /**
+     * @return The number of events dropped because the buffer was full, as a field named `count`.
+     */
+    public StripedCounter getDroppedEvents() {
+        return droppedEvents;
+    }
+
+    /**
+     * @return The size limit (`limit_bytes`), allocated bytes (`allocated_bytes`) and bytes taken by pending events
+     * (`used_bytes`) of the series' off-heap buffer, or an empty list if the series buffers events on the heap.
+     */
+    public List<IMeasurementField> getOffHeapBufferFields() {
+        if (arena == null) {
+            return ImmutableList.of();
+        }
+        return ImmutableList.of(new LongGauge("limit_bytes", arena::getLimitBytes), new LongGauge("allocated_bytes", arena::getAllocatedBytes), new LongGauge("used_bytes", arena::getUsedBytes));
+    }
+
     @Override
     public List<String> getFieldNames() {
-        return fields.stream().map(GetterField::getName).collect(Collectors.toList());
+        if (rollupGetters != null) {
+            return rollupFieldNames;
+        }
+
+        final List<String> fieldNames = fields.stream().map(GetterField::getName).collect(Collectors.toList());
+        if (sampler != null || reservoir != null) {
+            fieldNames.add(SAMPLE_RATE_FIELD);
+        }
+        return fieldNames;
     }
 
     @Override
@@ -81,24 +408,277 @@ public class EventSeries<T> implements InfluxSeries {
 
     @Override
     public Collection<DataPoint> getValueSets() {
-        Collection<DataPoint> valueSets = new LinkedList<>();
-        events.drainTo(valueSets);
+        return getValueSets(System.currentTimeMillis());
+    }
+
+    /**
+     * Only rollups are stamped with `timestamp`, buffered events and samples keep the time they were committed at.
+     */
+    @Override
+    public Collection<DataPoint> getValueSets(final long timestamp) {
+        if (rollupGetters != null) {
+            final List<DataPoint> valueSets = new ArrayList<>();
+            final EventRollup[] currentRollups = rollups;
+            for (int tagSetId = 0; tagSetId < currentRollups.length; tagSetId++) {
+                final EventTagSets.TagSet tagSet = tagSets.get(tagSetId);
+                if (currentRollups[tagSetId] == null || tagSet == null) {
+                    continue;
+                }
+                final DataPoint dataPoint = currentRollups[tagSetId].collect(timestamp, tagSet.getTags());
+                if (dataPoint != null) {
+                    valueSets.add(dataPoint);
+                }
+            }
+            return valueSets;
+        }
+        if (reservoir != null) {
+            return reservoir.collect(SAMPLE_RATE_FIELD);
+        }
+
+        final double sampleRate = sampler != null ? sampler.collectSampleRate() : 1;
+        if (arena != null) {
+            final List<DataPoint> valueSets = new ArrayList<>();
+            arena.drain(new EventArena.RecordConsumer() {
+                private FieldValues fieldValues;
+                private long timestamp;
+                private int tagSetId;
+
+                @Override
+                public FieldSink startRecord(final long timestamp, final int tagSetId) {
+                    this.timestamp = timestamp;
+                    this.tagSetId = tagSetId;
+                    // leave room for the sample rate
+                    return fieldValues = new FieldValues(fields.size() + 1);
+                }
+
+                @Override
+                public void endRecord() {
+                    if (sampler != null) {
+                        fieldValues.putDouble(SAMPLE_RATE_FIELD, sampleRate);
+                    }
+                    if (!fieldValues.isEmpty()) {
+                        valueSets.add(new DataPoint(timestamp, TimeUnit.MILLISECONDS, fieldValues, tagSets.get(tagSetId).getTags()));
+                    }
+                }
+            });
+            return valueSets;
+        }
+
+        final List<DataPoint> valueSets = new ArrayList<>(events.size());
+        drainEvents(slot -> {
+            // leave room for the sample rate
+            final FieldValues fieldValues = new FieldValues(fields.size() + 1);
+            columns.writeTo(slot, fieldValues);
+            if (sampler != null) {
+                fieldValues.putDouble(SAMPLE_RATE_FIELD, sampleRate);
+            }
+            if (!fieldValues.isEmpty()) {
+                valueSets.add(new DataPoint(columns.getTimestamp(slot), TimeUnit.MILLISECONDS, fieldValues, tagSets.get(columns.getTagSetId(slot)).getTags()));
+            }
+        });
 
         return valueSets;
     }
 
+    /**
+     * Drains all pending events and encodes them as line protocol, without materializing a data point per event.
+     *
+     * @param measurementAndTags The escaped measurement name and tags, see
+     *                           {@link LineProtocol#appendMeasurementAndTags(StringBuilder, String, Map)}. The tags of
+     *                           each event are appended to them.
+     * @param lines              Receives one line per event.
+     */
+    public void drainLineProtocol(final String measurementAndTags, final Collection<? super String> lines) {
+        drainLineProtocol(measurementAndTags, Collections.emptySet(), System.currentTimeMillis(), lines);
+    }
+
+    /**
+     * Like {@link #drainLineProtocol(String, Collection)}, but leaves out the per-event tags named in `overriddenTags`,
+     * e.g. because `measurementAndTags` holds reporter tags of the same names, which take precedence.
+     *
+     * @param timestamp The time in milliseconds rollups are stamped with, e.g. that of the registry snapshot reported
+     *                  along with the series. Buffered events and samples keep the time they were committed at.
+     */
+    public void drainLineProtocol(final String measurementAndTags, final Set<String> overriddenTags, final long timestamp, final Collection<? super String> lines) {
+        final IntFunction<String> escapedTags = tagSets.escapedTagsWithout(overriddenTags);
+        final StringBuilder sb = new StringBuilder(measurementAndTags.length() + 16 * (fields.size() + 1));
+        final LineProtocol.FieldWriter fieldWriter = new LineProtocol.FieldWriter();
+
+        if (rollupGetters != null || reservoir != null) {
+            for (DataPoint dataPoint : getValueSets(timestamp)) {
+                sb.setLength(0);
+                LineProtocol.appendTags(sb.append(measurementAndTags), Maps.filterKeys(dataPoint.getTags(), name -> !overriddenTags.contains(name)));
+                dataPoint.getFieldValues().writeTo(fieldWriter.startLine(sb.append(' ')));
+                lines.add(LineProtocol.appendTime(sb, dataPoint.getTime(), dataPoint.getPrecision()).toString());
+            }
+            return;
+        }
+
+        final double sampleRate = sampler != null ? sampler.collectSampleRate() : 1;
+        if (arena != null) {
+            arena.drain(new EventArena.RecordConsumer() {
+                private long timestamp;
+
+                @Override
+                public FieldSink startRecord(final long timestamp, final int tagSetId) {
+                    this.timestamp = timestamp;
+                    sb.setLength(0);
+                    sb.append(measurementAndTags).append(escapedTags.apply(tagSetId)).append(' ');
+                    return fieldWriter.startLine(sb);
+                }
+
+                @Override
+                public void endRecord() {
+                    if (sampler != null) {
+                        fieldWriter.putDouble(SAMPLE_RATE_FIELD, sampleRate);
+                    }
+                    if (fieldWriter.getFieldCount() > 0) {
+                        lines.add(LineProtocol.appendTime(sb, timestamp, TimeUnit.MILLISECONDS).toString());
+                    }
+                }
+            });
+            return;
+        }
+
+        drainEvents(slot -> {
+            sb.setLength(0);
+            sb.append(measurementAndTags).append(escapedTags.apply(columns.getTagSetId(slot))).append(' ');
+            columns.writeTo(slot, fieldWriter.startLine(sb));
+            if (sampler != null) {
+                fieldWriter.putDouble(SAMPLE_RATE_FIELD, sampleRate);
+            }
+            if (fieldWriter.getFieldCount() > 0) {
+                lines.add(LineProtocol.appendTime(sb, columns.getTimestamp(slot), TimeUnit.MILLISECONDS).toString());
+            }
+        });
+    }
+
+    private void drainEvents(final EventRingBuffer.SlotConsumer consumer) {
+        final EventRingBuffer.SlotConsumer validSlots = slot -> {
+            if (columns.isValid(slot)) {
+                consumer.accept(slot);
+            }
+            columns.clear(slot);
+        };
+
+        drainEvents(validSlots, MAX_DRAIN_BATCH_SIZE);
+        for (StagingBuffer buffer : stagingBuffers) {
+            // drain after every staging buffer, so that publishing the next one finds the shared buffer empty
+            if (buffer.tryPublish()) {
+                drainEvents(validSlots, MAX_DRAIN_BATCH_SIZE);
+            }
+            if (buffer.isAbandoned()) {
+                stagingBuffers.remove(buffer);
+            }
+        }
+    }
+
+    /**
+     * Drains at most one buffer's worth of events, so that a single report ends even if events are committed as fast
+     * as they are drained.
+     */
+    private void drainEvents(final EventRingBuffer.SlotConsumer consumer, final int batchSize) {
+        int remaining = events.capacity();
+        while (remaining > 0) {
+            final int maxElements = Math.min(batchSize, remaining);
+            final int drained = events.drain(maxElements, consumer);
+            if (drained < maxElements) {
+                // the buffer is empty or the next event is not yet published
+                return;
+            }
+            remaining -= drained;
+        }
+    }
+
+    /**
+     * Publishes the events staged by all threads to the shared buffer, see {@link Builder#withThreadLocalStaging(int)}.
+     * Does not wait for threads which are staging or publishing events at the same time.
+     */
+    public void flush() {
+        for (StagingBuffer buffer : stagingBuffers) {
+            buffer.tryPublish();
+        }
+    }
+
+    private StagingBuffer createStagingBuffer() {
+        final StagingBuffer buffer = new StagingBuffer();
+        stagingBuffers.add(buffer);
+        return buffer;
+    }
+
+    /**
+     * Events staged by a single thread. Staging and publishing lock the buffer, which is uncontended unless the series
+     * is drained at the same time.
+     */
+    private class StagingBuffer {
+        private final EventColumns stagedEvents = new EventColumns(columnGetters, stagingCapacity, tagSets.hasTags());
+        private final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+        private final ReentrantLock lock = new ReentrantLock();
+        private int size = 0;
+
+        void stage(final T event, final int tagSetId) {
+            lock.lock();
+            try {
+                stagedEvents.write(size, event, System.currentTimeMillis(), tagSetId);
+                if (++size == stagingCapacity) {
+                    publish(true);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Publishes the staged events unless the owner is staging or publishing at the same time.
+         *
+         * @return True if the buffer was published.
+         */
+        boolean tryPublish() {
+            if (!lock.tryLock()) {
+                return false;
+            }
+            try {
+                publish(false);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void publish(final boolean mayBlock) {
+            if (size == 0) {
+                return;
+            }
+
+            final long position = events.tryClaim(size);
+            for (int i = 0; i < size; i++) {
+                final long eventPosition = position >= 0 ? position + i : claim(mayBlock);
+                if (eventPosition >= 0) {
+                    stagedEvents.copyTo(i, columns, events.slot(eventPosition));
+                    events.publish(eventPosition);
+                }
+                stagedEvents.clear(i);
+            }
+            size = 0;
+        }
+
+        boolean isAbandoned() {
+            final Thread thread = owner.get();
+            return (thread == null || !thread.isAlive()) && size == 0;
+        }
+    }
+
     private static class GetterField {
-        private final Method getter;
+        private final GetterAccessor accessor;
         private final String name;
 
         public GetterField(String name, Method getter) {
-
-            this.getter = getter;
+            this.accessor = GetterAccessor.forGetter(getter);
             this.name = name;
         }
 
-        public Object invoke(Object target) throws InvocationTargetException, IllegalAccessException {
-            return getter.invoke(target);
+        public void writeTo(Object target, FieldValues fieldValues) {
+            accessor.writeTo(target, name, fieldValues);
         }
 
         public String getName() {
@@ -109,7 +689,21 @@ public class EventSeries<T> implements InfluxSeries {
     public static class Builder<T> {
         protected final String measurementName;
         private final Collection<Method> fields;
+        private final List<Method> tagGetters = new ArrayList<>();
         protected List<MetricTag> tags = new ArrayList<>();
+        private int bufferCapacity = DEFAULT_BUFFER_CAPACITY;
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+        private long blockTimeout = 0;
+        private TimeUnit blockTimeoutUnit = TimeUnit.MILLISECONDS;
+        private boolean rollup = false;
+        private boolean rollupPercentiles = false;
+        private EventSampler sampler;
+        private int reservoirSize = 0;
+        private int stagingCapacity = 0;
+        private CompactTags seriesTags;
+        private int offHeapChunkSize = 0;
+        private long offHeapMaxBytes = 0;
+        private int maxTagSets = DEFAULT_MAX_TAG_SETS;
 
         public Builder(final String measurementName, Collection<Method> fields) {
             this.measurementName = measurementName;
@@ -126,8 +720,150 @@ public class EventSeries<T> implements InfluxSeries {
             return this;
         }
 
+        /**
+         * Uses `seriesTags` instead of the tags added with {@link #withTag(MetricTag)} and {@link #withTags(Collection)},
+         * so the registry can share them with the series' key.
+         */
+        Builder<T> withSeriesTags(final CompactTags seriesTags) {
+            this.seriesTags = seriesTags;
+            return this;
+        }
+
+        /**
+         * Reports the values of `tagGetters` as per-event tags, see {@link EventTag}.
+         */
+        public Builder<T> withTagGetters(final Collection<Method> tagGetters) {
+            this.tagGetters.addAll(tagGetters);
+            return this;
+        }
+
+        /**
+         * Limits the number of distinct combinations of per-event tag values, see {@link EventTagSets}. Events with new
+         * combinations beyond the limit are reported with every tag set to {@value InfluxSeriesRegistry#OVERFLOW_TAG_VALUE}.
+         * Defaults to {@value #DEFAULT_MAX_TAG_SETS}.
+         */
+        public Builder<T> withMaxTagSets(final int maxTagSets) {
+            Preconditions.checkArgument(maxTagSets > 1, "maxTagSets must be greater than one");
+            this.maxTagSets = maxTagSets;
+            return this;
+        }
+
+        /**
+         * @param bufferCapacity The maximum number of events buffered between reports, rounded up to a power of two.
+         * @param overflowPolicy What to do with events committed while the buffer is full. Use
+         *                       {@link #withBlockingBuffer(int, long, TimeUnit)} to block.
+         */
+        public Builder<T> withBuffer(final int bufferCapacity, final OverflowPolicy overflowPolicy) {
+            Preconditions.checkArgument(overflowPolicy != OverflowPolicy.BLOCK, "BLOCK requires a timeout, use withBlockingBuffer");
+            this.bufferCapacity = bufferCapacity;
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Makes committing threads wait up to `timeout` for the reporter to make room if the buffer is full.
+         */
+        public Builder<T> withBlockingBuffer(final int bufferCapacity, final long timeout, final TimeUnit unit) {
+            Preconditions.checkArgument(timeout >= 0, "timeout must not be negative");
+            this.bufferCapacity = bufferCapacity;
+            this.overflowPolicy = OverflowPolicy.BLOCK;
+            this.blockTimeout = timeout;
+            this.blockTimeoutUnit = unit;
+            return this;
+        }
+
+        /**
+         * Aggregates the numeric fields of committed events and reports one data point per interval instead of one per
+         * event.
+         *
+         * @param withPercentiles Whether to report the 50th, 90th and 99th percentile of each numeric field.
+         */
+        public Builder<T> withRollup(final boolean withPercentiles) {
+            this.rollup = true;
+            this.rollupPercentiles = withPercentiles;
+            return this;
+        }
+
+        /**
+         * Keeps each committed event with the given probability.
+         */
+        public Builder<T> withSampling(final double probability) {
+            this.sampler = EventSampler.withProbability(probability);
+            return this;
+        }
+
+        /**
+         * Keeps at most `eventsPerSecond` committed events per second, allowing bursts of up to one second worth of
+         * events. The sample rate of the points of one report is the fraction of events kept since the previous report.
+         */
+        public Builder<T> withRateLimit(final long eventsPerSecond) {
+            this.sampler = EventSampler.withRateLimit(eventsPerSecond);
+            return this;
+        }
+
+        /**
+         * Like {@link #withRateLimit(long)}, but reads the time from the given ticker.
+         */
+        Builder<T> withRateLimit(final long eventsPerSecond, final Ticker ticker) {
+            this.sampler = EventSampler.withRateLimit(eventsPerSecond, ticker);
+            return this;
+        }
+
+        /**
+         * Reports a uniform random sample of at most `size` of the events committed per report interval.
+         */
+        public Builder<T> withReservoir(final int size) {
+            Preconditions.checkArgument(size > 0, "size must be positive");
+            this.reservoirSize = size;
+            return this;
+        }
+
+        /**
+         * Lets every committing thread stage up to `stagingCapacity` events in a buffer of its own before publishing
+         * them to the shared buffer in a single batch. Reduces contention between committing threads at the cost of
+         * delaying events until the staging buffer is full or the series is drained.
+         */
+        public Builder<T> withThreadLocalStaging(final int stagingCapacity) {
+            Preconditions.checkArgument(stagingCapacity > 0, "stagingCapacity must be positive");
+            this.stagingCapacity = stagingCapacity;
+            return this;
+        }
+
+        /**
+         * Buffers committed events off-heap, encoded into direct byte buffers of `chunkSize` bytes, see
+         * {@link EventArena}. Useful when events may pile up for a long time, e.g. while InfluxDB is unreachable.
+         *
+         * @param chunkSize      The size of a buffer chunk, which limits the encoded size of a single event.
+         * @param maxBytes       The maximum number of bytes allocated for buffered events.
+         * @param overflowPolicy What to do with events committed while the buffer is full. DROP_OLDEST drops the oldest
+         *                       chunk of events. BLOCK is not supported.
+         */
+        public Builder<T> withOffHeapBuffer(final int chunkSize, final long maxBytes, final OverflowPolicy overflowPolicy) {
+            Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+            Preconditions.checkArgument(maxBytes >= chunkSize, "maxBytes must hold at least one chunk");
+            Preconditions.checkArgument(overflowPolicy != OverflowPolicy.BLOCK, "Off-heap buffers cannot block");
+            this.offHeapChunkSize = chunkSize;
+            this.offHeapMaxBytes = maxBytes;
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
         public EventSeries<T> build() {
-            return new EventSeries<>(measurementName, tags, ImmutableSet.copyOf(fields));
+            Preconditions.checkState(!rollup || (sampler == null && reservoirSize == 0), "Rollup series cannot be sampled");
+            Preconditions.checkState(stagingCapacity == 0 || (!rollup && reservoirSize == 0), "Rollup and reservoir series cannot use staging buffers");
+            Preconditions.checkState(stagingCapacity <= bufferCapacity, "Staging buffers must not be larger than the series buffer");
+            Preconditions.checkState(sampler == null || reservoirSize == 0, "Reservoir sampling cannot be combined with other sampling strategies");
+            Preconditions.checkState(offHeapChunkSize == 0 || (!rollup && reservoirSize == 0 && stagingCapacity == 0), "Rollup, reservoir and staging series cannot buffer off-heap");
+            Preconditions.checkState(offHeapChunkSize == 0 || overflowPolicy != OverflowPolicy.BLOCK, "Off-heap buffers cannot block");
+
+            final Map<String, String> eventSeriesTags = seriesTags != null ? seriesTags : CompactTags.of(tags);
+            for (Method tagGetter : tagGetters) {
+                final String tagName = EventTagSets.tagNameOf(tagGetter);
+                Preconditions.checkState(!eventSeriesTags.containsKey(tagName), "Per-event tag %s clashes with the series tag of the same name", tagName);
+            }
+
+            final ImmutableSet<Method> getters = ImmutableSet.copyOf(fields);
+            return new EventSeries<>(measurementName, eventSeriesTags, getters, ImmutableList.copyOf(tagGetters), maxTagSets, bufferCapacity, overflowPolicy, blockTimeout, blockTimeoutUnit, rollup, rollupPercentiles, sampler, reservoirSize > 0 ? new EventReservoir(reservoirSize) : null, stagingCapacity, offHeapChunkSize > 0 ? new EventArena(getters, offHeapChunkSize, offHeapMaxBytes, overflowPolicy == OverflowPolicy.DROP_OLDEST) : null);
         }
     }
 
@@ -0,0 +1,21 @@
+package net.monofraps.influxmetrics;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a getter of an event model as a tag of the event rather than a field.
+ * The tag value is the string representation of the getter's value; the tag is omitted if the getter returns null.
+ *
+ * @see EventSeries#fromPojo(Class, String)
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface EventTag {
+    /**
+     * @return The tag name. Defaults to the getter name without the 'get' prefix.
+     */
+    String value() default "";
+}
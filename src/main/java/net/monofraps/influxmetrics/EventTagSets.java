@@ -0,0 +1,219 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import net.monofraps.influxmetrics.reflection.GetterAccessor;
+import org.influxdb.dto.LineProtocol;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * Interns the combinations of per-event tag values of an event series into a dictionary of tag sets.
+ * <p>
+ * Tag values are looked up in a tree with one level per tag getter, so resolving the tag set of an event does not
+ * allocate once its combination of values was seen. Each tag set is identified by a small integer id, which is all a
+ * buffered event needs to store, and keeps its tags escaped for line protocol.
+ * <p>
+ * The number of tag sets is limited, so that a tag with unbounded cardinality, e.g. a user id, cannot grow the
+ * dictionary without bound. Once the limit is reached, events with a new combination of tag values share a single
+ * overflow tag set, in which every tag has the value {@value InfluxSeriesRegistry#OVERFLOW_TAG_VALUE}.
+ */
+class EventTagSets {
+    private static final Logger logger = LoggerFactory.getLogger(EventTagSets.class);
+    private static final Object NULL_VALUE = new Object();
+
+    private final List<String> tagNames;
+    private final List<GetterAccessor> accessors;
+    private final int maxTagSets;
+    private final Node root = new Node(null, null);
+    private volatile TagSet[] tagSets = new TagSet[16];
+    private volatile TagSet overflowTagSet;
+    private int tagSetCount = 0;
+
+    /**
+     * @param maxTagSets The maximum number of tag sets, including the overflow tag set.
+     */
+    EventTagSets(final Collection<Method> tagGetters, final int maxTagSets) {
+        Preconditions.checkArgument(maxTagSets > 1, "maxTagSets must be greater than one");
+        final ImmutableList.Builder<String> tagNames = ImmutableList.builder();
+        final ImmutableList.Builder<GetterAccessor> accessors = ImmutableList.builder();
+        for (Method getter : tagGetters) {
+            tagNames.add(tagNameOf(getter));
+            accessors.add(GetterAccessor.forGetter(getter));
+        }
+
+        this.tagNames = tagNames.build();
+        this.accessors = accessors.build();
+        this.maxTagSets = maxTagSets;
+    }
+
+    /**
+     * @return An upper bound of the tag set ids.
+     */
+    int getMaxTagSets() {
+        return maxTagSets;
+    }
+
+    /**
+     * @return The name of the tag reported by `tagGetter`, see {@link EventTag#value()}.
+     */
+    static String tagNameOf(final Method tagGetter) {
+        final EventTag annotation = tagGetter.getAnnotation(EventTag.class);
+        return annotation != null && !annotation.value().isEmpty() ? annotation.value() : tagGetter.getName().substring(3);
+    }
+
+    /**
+     * @return The escaped tags of a tag set by id, leaving out the tags named in `overriddenTags`. Tag sets are escaped
+     * again on first use only if some of their tags are left out.
+     */
+    IntFunction<String> escapedTagsWithout(final Set<String> overriddenTags) {
+        if (Collections.disjoint(tagNames, overriddenTags)) {
+            return id -> get(id).getEscapedTags();
+        }
+
+        final Map<Integer, String> escapedTags = new HashMap<>();
+        return id -> escapedTags.computeIfAbsent(id, key -> LineProtocol.appendTags(new StringBuilder(), Maps.filterKeys(get(key).getTags(), name -> !overriddenTags.contains(name))).toString());
+    }
+
+    boolean hasTags() {
+        return !accessors.isEmpty();
+    }
+
+    /**
+     * Reads the tag values of `event` and returns the id of their tag set, adding it to the dictionary if necessary.
+     */
+    int resolve(final Object event) {
+        Node node = root;
+        // indexed loops do not allocate an iterator on the commit path
+        for (int i = 0; i < accessors.size(); i++) {
+            final Object value = accessors.get(i).get(event);
+            final Object key = value != null ? value : NULL_VALUE;
+            final Node child = node.children.get(key);
+            if (child == null && overflowTagSet != null) {
+                // do not grow the tree for combinations which cannot get a tag set of their own
+                return overflowTagSet.id;
+            }
+            node = child != null ? child : node.child(key);
+        }
+
+        final TagSet tagSet = node.tagSet;
+        return tagSet != null ? tagSet.id : intern(node);
+    }
+
+    TagSet get(final int id) {
+        return tagSets[id];
+    }
+
+    private synchronized int intern(final Node leaf) {
+        if (leaf.tagSet != null) {
+            return leaf.tagSet.id;
+        }
+        if (tagSetCount == maxTagSets - 1 || overflowTagSet != null) {
+            leaf.tagSet = overflow();
+            return leaf.tagSet.id;
+        }
+
+        // the path from the root to the leaf holds the tag values
+        final Object[] values = new Object[accessors.size()];
+        Node node = leaf;
+        for (int i = values.length - 1; i >= 0; i--) {
+            values[i] = node.value;
+            node = node.parent;
+        }
+
+        final ImmutableMap.Builder<String, String> tags = ImmutableMap.builder();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != NULL_VALUE) {
+                tags.put(tagNames.get(i), String.valueOf(values[i]));
+            }
+        }
+
+        final TagSet tagSet = add(tags.build());
+        leaf.tagSet = tagSet;
+        return tagSet.id;
+    }
+
+    private TagSet overflow() {
+        if (overflowTagSet == null) {
+            logger.warn("Reached the limit of {} tag sets, events with new combinations of the tags {} are reported as {}", maxTagSets, tagNames, InfluxSeriesRegistry.OVERFLOW_TAG_VALUE);
+            final ImmutableMap.Builder<String, String> tags = ImmutableMap.builder();
+            for (String tagName : tagNames) {
+                tags.put(tagName, InfluxSeriesRegistry.OVERFLOW_TAG_VALUE);
+            }
+            overflowTagSet = add(tags.build());
+        }
+        return overflowTagSet;
+    }
+
+    private TagSet add(final Map<String, String> tags) {
+        final TagSet tagSet = new TagSet(tagSetCount, tags);
+        TagSet[] currentTagSets = tagSets;
+        if (tagSetCount == currentTagSets.length) {
+            currentTagSets = Arrays.copyOf(currentTagSets, Math.min(tagSetCount * 2, maxTagSets));
+        }
+        currentTagSets[tagSetCount++] = tagSet;
+        // publish the new entry before anyone refers to it
+        tagSets = currentTagSets;
+        return tagSet;
+    }
+
+    static class TagSet {
+        private final int id;
+        private final Map<String, String> tags;
+        private final String escapedTags;
+
+        private TagSet(final int id, final Map<String, String> tags) {
+            this.id = id;
+            this.tags = tags;
+
+            this.escapedTags = LineProtocol.appendTags(new StringBuilder(), tags).toString();
+        }
+
+        Map<String, String> getTags() {
+            return tags;
+        }
+
+        /**
+         * @return The tags in line protocol format, each preceded by a comma.
+         */
+        String getEscapedTags() {
+            return escapedTags;
+        }
+    }
+
+    private static class Node {
+        private final Node parent;
+        private final Object value;
+        private final ConcurrentHashMap<Object, Node> children = new ConcurrentHashMap<>();
+        private volatile TagSet tagSet;
+
+        private Node(final Node parent, final Object value) {
+            this.parent = parent;
+            this.value = value;
+        }
+
+        private Node child(final Object value) {
+            final Node child = children.get(value);
+            if (child != null) {
+                return child;
+            }
+
+            final Node newChild = new Node(this, value);
+            final Node existingChild = children.putIfAbsent(value, newChild);
+            return existingChild != null ? existingChild : newChild;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package net.monofraps.influxmetrics;
+
+import net.monofraps.influxmetrics.fields.FieldSink;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An ordered list of field values which stores long and double values unboxed.
+ * <p>
+ * Long and Double values passed to {@link #put(String, Object)} are stored unboxed, all other values, including Integer
+ * and Float, keep their type. Null values are skipped. Field names must be unique; unlike a map, which would keep the
+ * last value, adding a field name twice throws an {@link IllegalArgumentException}.
+ */
+public class FieldValues implements FieldSink {
+    private static final byte LONG = 0;
+    private static final byte DOUBLE = 1;
+    private static final byte OBJECT = 2;
+
+    private String[] names;
+    private byte[] types;
+    private long[] bits;
+    private Object[] objects;
+    private int size;
+
+    public FieldValues() {
+        this(8);
+    }
+
+    public FieldValues(final int initialCapacity) {
+        final int capacity = Math.max(1, initialCapacity);
+        this.names = new String[capacity];
+        this.types = new byte[capacity];
+        this.bits = new long[capacity];
+    }
+
+    public static FieldValues fromMap(final Map<String, Object> fields) {
+        final FieldValues values = new FieldValues(fields.size());
+        fields.forEach(values::put);
+
+        return values;
+    }
+
+    @Override
+    public void putLong(final String name, final long value) {
+        final int index = append(name, LONG);
+        bits[index] = value;
+    }
+
+    @Override
+    public void putDouble(final String name, final double value) {
+        final int index = append(name, DOUBLE);
+        bits[index] = Double.doubleToRawLongBits(value);
+    }
+
+    @Override
+    public void put(final String name, final Object value) {
+        if (value == null) {
+            return;
+        }
+
+        if (value instanceof Long) {
+            putLong(name, (Long) value);
+        } else if (value instanceof Double) {
+            putDouble(name, (Double) value);
+        } else {
+            final int index = append(name, OBJECT);
+            if (objects == null) {
+                objects = new Object[names.length];
+            }
+            objects[index] = value;
+        }
+    }
+
+    public void putAll(final FieldValues values) {
+        values.writeTo(this);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Replays all values into `sink` in insertion order.
+     *
+     * @param sink The sink to write values into.
+     */
+    public void writeTo(final FieldSink sink) {
+        for (int i = 0; i < size; i++) {
+            switch (types[i]) {
+                case LONG:
+                    sink.putLong(names[i], bits[i]);
+                    break;
+                case DOUBLE:
+                    sink.putDouble(names[i], Double.longBitsToDouble(bits[i]));
+                    break;
+                default:
+                    sink.put(names[i], objects[i]);
+            }
+        }
+    }
+
+    /**
+     * @return A map of all field names and (boxed) values.
+     */
+    public Map<String, Object> toMap() {
+        final Map<String, Object> map = new HashMap<>(size);
+        writeTo(FieldSink.forMap(map));
+
+        return map;
+    }
+
+    /**
+     * @return A hash of the field names and values, which tells with high probability whether two instances differ.
+     */
+    long fingerprint() {
+        long hash = 1;
+        for (int i = 0; i < size; i++) {
+            final long value = types[i] == OBJECT ? objects[i].hashCode() : bits[i];
+            hash = 31 * (31 * hash + names[i].hashCode()) + value;
+            // spreads the bits, so that changes of different fields do not cancel each other out
+            hash *= 0x9E3779B97F4A7C15L;
+        }
+        return hash;
+    }
+
+    private int append(final String name, final byte type) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                throw new IllegalArgumentException("Duplicate field " + name);
+            }
+        }
+        if (size == names.length) {
+            final int capacity = size * 2;
+            names = Arrays.copyOf(names, capacity);
+            types = Arrays.copyOf(types, capacity);
+            bits = Arrays.copyOf(bits, capacity);
+            if (objects != null) {
+                objects = Arrays.copyOf(objects, capacity);
+            }
+        }
+
+        names[size] = name;
+        types[size] = type;
+        return size++;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+}
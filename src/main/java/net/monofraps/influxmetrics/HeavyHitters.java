@@ -0,0 +1,303 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the K most frequent keys (e.g. endpoints or tenants) in bounded memory using the Space-Saving algorithm.
+ * <p>
+ * Keys are partitioned by hash over several independently locked Space-Saving summaries, so concurrent offers only
+ * contend if their keys fall into the same stripe. Each summary monitors at most capacity / stripes keys; when it is
+ * full, the least frequent monitored key is replaced and its count becomes the new key's overestimation error.
+ * <p>
+ * {@link #registerSeries(InfluxSeriesRegistry)} registers a series reporting K data points tagged with rank=1..K, so the
+ * number of points does not grow with the number of distinct keys. All ranks of a report are taken from the same top K
+ * list, which is taken once per collection of the series.
+ * <p>
+ * Measurement: `measurementName`
+ * Tags:
+ * rank - 1 for the most frequent key
+ * Fields:
+ * key - the key's string representation, empty if fewer keys were seen
+ * count - the key's estimated count
+ * error - upper bound of the count's overestimation
+ *
+ * @param <T> The key type.
+ */
+public class HeavyHitters<T> {
+    private static final int MAX_STRIPES = 16;
+
+    private final String measurementName;
+    private final List<MetricTag> tags;
+    private final int k;
+    private final boolean resetOnReport;
+    private final List<Summary<T>> stripes;
+
+    /**
+     * Creates a summary of the top `k` keys monitoring 10 * `k` keys, which resets on every report.
+     */
+    public HeavyHitters(final String measurementName, final List<MetricTag> tags, final int k) {
+        this(measurementName, tags, k, 10 * k, true);
+    }
+
+    /**
+     * @param measurementName The measurement name of the rank series.
+     * @param tags            Additional tags of the rank series.
+     * @param k               The number of keys to report.
+     * @param capacity        The number of keys to monitor, at least `k`. Higher capacities improve accuracy.
+     * @param resetOnReport   Whether to start a new interval every time the summary is reported.
+     */
+    public HeavyHitters(final String measurementName, final List<MetricTag> tags, final int k, final int capacity, final boolean resetOnReport) {
+        Preconditions.checkArgument(k > 0, "k must be positive");
+        Preconditions.checkArgument(capacity >= k, "capacity must be at least k");
+
+        this.measurementName = measurementName;
+        this.tags = ImmutableList.copyOf(tags);
+        this.k = k;
+        this.resetOnReport = resetOnReport;
+
+        // every stripe must be able to hold k keys, since all top keys may hash into the same stripe
+        final int stripeCount = Integer.highestOneBit(Math.max(1, Math.min(MAX_STRIPES, capacity / k)));
+        final ImmutableList.Builder<Summary<T>> stripes = ImmutableList.builder();
+        for (int i = 0; i < stripeCount; i++) {
+            stripes.add(new Summary<>((capacity + stripeCount - 1) / stripeCount));
+        }
+        this.stripes = stripes.build();
+    }
+
+    public void offer(final T key) {
+        offer(key, 1);
+    }
+
+    public void offer(final T key, final long weight) {
+        Preconditions.checkArgument(weight > 0, "weight must be positive");
+
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        stripes.get(hash & (stripes.size() - 1)).offer(key, weight);
+    }
+
+    /**
+     * @return The current top K keys ordered by descending count, without resetting the summary.
+     */
+    public List<Entry<T>> getTopK() {
+        final List<Entry<T>> entries = new ArrayList<>();
+        for (Summary<T> stripe : stripes) {
+            stripe.collect(entries, false);
+        }
+
+        return topK(entries);
+    }
+
+    /**
+     * Registers the series reporting the ranks with `registry`. The series is pinned, since it is not looked up again.
+     */
+    public void registerSeries(final InfluxSeriesRegistry registry) {
+        registry.pin(registry.series(measurementName, tags, TopKSeries::new));
+    }
+
+    /**
+     * Takes the top K list of a report, resetting the summary if it resets on report.
+     */
+    private List<Entry<T>> collectTopK() {
+        final List<Entry<T>> entries = new ArrayList<>();
+        for (Summary<T> stripe : stripes) {
+            stripe.collect(entries, resetOnReport);
+        }
+
+        return topK(entries);
+    }
+
+    private List<Entry<T>> topK(final List<Entry<T>> entries) {
+        entries.sort(Comparator.comparingLong((Entry<T> entry) -> entry.count).reversed());
+        return ImmutableList.copyOf(entries.subList(0, Math.min(k, entries.size())));
+    }
+
+    public static class Entry<T> {
+        private final T key;
+        private final long count;
+        private final long error;
+
+        Entry(final T key, final long count, final long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public T getKey() {
+            return key;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+
+    /**
+     * Reports one data point per rank, all taken from a single top K list per collection.
+     */
+    private class TopKSeries implements InfluxSeries {
+        private final Map<String, String> seriesTags;
+        private final List<Map<String, String>> rankTags;
+        private final List<String> fieldNames = ImmutableList.of("key", "count", "error");
+
+        private TopKSeries(final Map<String, String> seriesTags) {
+            this.seriesTags = seriesTags;
+
+            final ImmutableList.Builder<Map<String, String>> rankTags = ImmutableList.builder();
+            for (int rank = 1; rank <= k; rank++) {
+                rankTags.add(ImmutableMap.of("rank", String.valueOf(rank)));
+            }
+            this.rankTags = rankTags.build();
+        }
+
+        @Override
+        public String getMeasurementName() {
+            return measurementName;
+        }
+
+        @Override
+        public Map<String, String> getTags() {
+            return seriesTags;
+        }
+
+        @Override
+        public Collection<DataPoint> getValueSets() {
+            return getValueSets(System.currentTimeMillis());
+        }
+
+        @Override
+        public Collection<DataPoint> getValueSets(final long timestamp) {
+            final List<Entry<T>> topK = collectTopK();
+
+            final List<DataPoint> dataPoints = new ArrayList<>(k);
+            for (int rank = 1; rank <= k; rank++) {
+                final Entry<T> entry = rank <= topK.size() ? topK.get(rank - 1) : null;
+                final FieldValues values = new FieldValues(fieldNames.size());
+                values.put("key", entry != null ? String.valueOf(entry.key) : "");
+                values.putLong("count", entry != null ? entry.count : 0);
+                values.putLong("error", entry != null ? entry.error : 0);
+                dataPoints.add(new DataPoint(timestamp, TimeUnit.MILLISECONDS, values, rankTags.get(rank - 1)));
+            }
+            return dataPoints;
+        }
+
+        @Override
+        public List<String> getFieldNames() {
+            return fieldNames;
+        }
+    }
+
+    /**
+     * A Space-Saving summary backed by an indexed min-heap of counts.
+     */
+    private static class Summary<T> {
+        private final Map<T, Integer> positions;
+        private final Object[] keys;
+        private final long[] counts;
+        private final long[] errors;
+        private int size = 0;
+
+        private Summary(final int capacity) {
+            this.positions = new HashMap<>(capacity * 2);
+            this.keys = new Object[capacity];
+            this.counts = new long[capacity];
+            this.errors = new long[capacity];
+        }
+
+        synchronized void offer(final T key, final long weight) {
+            final Integer position = positions.get(key);
+            if (position != null) {
+                counts[position] += weight;
+                siftDown(position);
+            } else if (size < keys.length) {
+                keys[size] = key;
+                counts[size] = weight;
+                errors[size] = 0;
+                positions.put(key, size);
+                siftUp(size++);
+            } else {
+                // replace the least frequent key, which is at the root of the heap
+                positions.remove(keys[0]);
+                errors[0] = counts[0];
+                counts[0] += weight;
+                keys[0] = key;
+                positions.put(key, 0);
+                siftDown(0);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized void collect(final List<Entry<T>> entries, final boolean reset) {
+            for (int i = 0; i < size; i++) {
+                entries.add(new Entry<>((T) keys[i], counts[i], errors[i]));
+            }
+
+            if (reset) {
+                positions.clear();
+                for (int i = 0; i < size; i++) {
+                    keys[i] = null;
+                }
+                size = 0;
+            }
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                final int parent = (position - 1) / 2;
+                if (counts[parent] <= counts[position]) {
+                    return;
+                }
+                swap(position, parent);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position) {
+            while (true) {
+                final int left = 2 * position + 1;
+                if (left >= size) {
+                    return;
+                }
+
+                final int right = left + 1;
+                final int smallest = right < size && counts[right] < counts[left] ? right : left;
+                if (counts[position] <= counts[smallest]) {
+                    return;
+                }
+                swap(position, smallest);
+                position = smallest;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void swap(final int first, final int second) {
+            final Object key = keys[first];
+            final long count = counts[first];
+            final long error = errors[first];
+
+            keys[first] = keys[second];
+            counts[first] = counts[second];
+            errors[first] = errors[second];
+            keys[second] = key;
+            counts[second] = count;
+            errors[second] = error;
+
+            positions.put((T) keys[first], first);
+            positions.put((T) keys[second], second);
+        }
+    }
+}
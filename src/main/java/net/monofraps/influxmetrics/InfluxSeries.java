@@ -14,5 +14,35 @@ public interface InfluxSeries {
 
     Collection<DataPoint> getValueSets();
 
+    /**
+     * Like {@link #getValueSets()}, but stamps values collected for the current point in time, e.g. gauge readings, with
+     * `timestamp` instead of reading the clock, so that all series of a report share one timestamp. Values carrying a
+     * timestamp of their own, e.g. events, keep it.
+     */
+    default Collection<DataPoint> getValueSets(final long timestamp) {
+        return getValueSets();
+    }
+
     List<String> getFieldNames();
+
+    /**
+     * Called by reporters after the value sets returned by the last call to {@link #getValueSets()} were written.
+     */
+    default void commitValueSets() {
+    }
+
+    /**
+     * Called by reporters if the value sets returned by the last call to {@link #getValueSets()} could not be written.
+     */
+    default void rollbackValueSets() {
+    }
+
+    /**
+     * Called by {@link InfluxSeriesRegistry#evictIdleSeries()} to tell whether the series was used since the last
+     * call, e.g. whether events were committed or changed values were reported. Series that report false are kept only
+     * as long as they are looked up.
+     */
+    default boolean pollActivity() {
+        return false;
+    }
 }
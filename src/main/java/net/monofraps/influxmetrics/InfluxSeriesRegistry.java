@@ -1,46 +1,412 @@
 package net.monofraps.influxmetrics;
 
-import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
 import net.monofraps.influxmetrics.fields.IMeasurementField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
+/**
+ * Holds the series reported by a reporter, identified by measurement name and tags.
+ * <p>
+ * A registry created with an idle series TTL evicts series which were neither looked up (including through a
+ * {@link SeriesHandle}) nor used within the TTL, see {@link #evictIdleSeries()}. Event series are used by committing
+ * events, time series by reporting values that changed since their previous report, see
+ * {@link InfluxSeries#pollActivity()}. Series whose values may legitimately stay the same for longer than the TTL,
+ * e.g. the series of {@link net.monofraps.influxmetrics.jvm.GarbageCollectorMetrics}, should be {@link #pin pinned}.
+ * Code holding on to a series should do so through a handle, which registers the series again if it was evicted.
+ * <p>
+ * The number of series per measurement can be limited, see {@link #setCardinalityLimits(String, int, int)}. Series
+ * registered beyond the hard limit collapse into a single overflow series per measurement, whose tag values are all
+ * {@value #OVERFLOW_TAG_VALUE}. Limits are enforced without locking the registry: series are counted when they are
+ * created and uncounted when they are evicted.
+ * <p>
+ * {@link #snapshot()} collects all series against a single timestamp. Registries with many series are collected in
+ * parallel, see {@link #setSnapshotParallelism(ForkJoinPool, int)}.
+ */
 public class InfluxSeriesRegistry {
-    private Collection<RegistryEventListener> registryListeners = new ArrayList<>();
-    private ConcurrentHashMap<MeasurementSeriesKey, InfluxSeries> measurementSeries = new ConcurrentHashMap<>();
+    public static final String OVERFLOW_TAG_VALUE = "__overflow__";
+    public static final String CARDINALITY_MEASUREMENT = "series_cardinality";
+    private static final Logger logger = LoggerFactory.getLogger(InfluxSeriesRegistry.class);
+    private static final int DEFAULT_PARALLEL_SNAPSHOT_THRESHOLD = 1024;
+    private static final int SNAPSHOT_BATCH_SIZE = 64;
+
+    private final Collection<RegistryEventListener> registryListeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentHashMap<MeasurementSeriesKey, SeriesEntry> measurementSeries = new ConcurrentHashMap<>();
+    private final Collection<InfluxSeries> series = Collections2.transform(measurementSeries.values(), SeriesEntry::getSeries);
+    private final long idleSeriesTtlMillis;
+    private volatile long clockMillis = System.currentTimeMillis();
+    private final ConcurrentHashMap<String, int[]> cardinalityLimits = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, MeasurementCardinality> cardinalities = new ConcurrentHashMap<>();
+    private volatile int[] defaultCardinalityLimits;
+    private volatile ForkJoinPool snapshotPool = ForkJoinPool.commonPool();
+    private volatile int parallelSnapshotThreshold = DEFAULT_PARALLEL_SNAPSHOT_THRESHOLD;
+
+    public InfluxSeriesRegistry() {
+        this(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param idleSeriesTtl How long a series may stay idle before it is evicted, or 0 to never evict series.
+     */
+    public InfluxSeriesRegistry(final long idleSeriesTtl, final TimeUnit unit) {
+        Preconditions.checkArgument(idleSeriesTtl >= 0, "idleSeriesTtl must not be negative");
+        this.idleSeriesTtlMillis = unit.toMillis(idleSeriesTtl);
+    }
 
     public Collection<InfluxSeries> getSeries() {
-        return measurementSeries.values();
+        return series;
+    }
+
+    /**
+     * Collects the value sets of all series, see {@link #snapshot(Predicate)}.
+     */
+    public RegistrySnapshot snapshot() {
+        return snapshot(series -> true);
+    }
+
+    /**
+     * Collects the value sets of the series matching `filter`. The clock is read once and the values of all time series
+     * and rollups are stamped with that time, see {@link InfluxSeries#getValueSets(long)}. If at least as many series
+     * match as the parallel snapshot threshold, they are collected in batches on the snapshot pool, otherwise on the
+     * calling thread.
+     * <p>
+     * A series whose value sets cannot be collected is rolled back and snapshotted without data points, so that a
+     * single broken series does not fail the whole report.
+     */
+    public RegistrySnapshot snapshot(final Predicate<? super InfluxSeries> filter) {
+        final long timestamp = System.currentTimeMillis();
+        final List<InfluxSeries> matchingSeries = new ArrayList<>(measurementSeries.size());
+        for (InfluxSeries influxSeries : series) {
+            if (filter.test(influxSeries)) {
+                matchingSeries.add(influxSeries);
+            }
+        }
+
+        final RegistrySnapshot.SeriesValues[] values = new RegistrySnapshot.SeriesValues[matchingSeries.size()];
+        if (matchingSeries.size() >= parallelSnapshotThreshold) {
+            snapshotPool.invoke(new SnapshotTask(matchingSeries, timestamp, values, 0, values.length));
+        } else {
+            collect(matchingSeries, timestamp, values, 0, values.length);
+        }
+        return new RegistrySnapshot(timestamp, Arrays.asList(values));
+    }
+
+    private static void collect(final List<InfluxSeries> series, final long timestamp, final RegistrySnapshot.SeriesValues[] values, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            final InfluxSeries influxSeries = series.get(i);
+            List<DataPoint> dataPoints;
+            try {
+                dataPoints = ImmutableList.copyOf(influxSeries.getValueSets(timestamp));
+            } catch (RuntimeException e) {
+                logger.error("Failed to collect series {}", influxSeries.getMeasurementName(), e);
+                influxSeries.rollbackValueSets();
+                dataPoints = ImmutableList.of();
+            }
+            values[i] = new RegistrySnapshot.SeriesValues(influxSeries, dataPoints);
+        }
+    }
+
+    /**
+     * Configures how {@link #snapshot()} collects large registries. By default, registries with at least 1024 series
+     * are collected on the common pool.
+     *
+     * @param pool                      The pool to collect series on.
+     * @param parallelSnapshotThreshold The number of series from which on series are collected on `pool`, or
+     *                                  {@link Integer#MAX_VALUE} to always collect on the calling thread.
+     */
+    public void setSnapshotParallelism(final ForkJoinPool pool, final int parallelSnapshotThreshold) {
+        Preconditions.checkNotNull(pool, "pool must not be null");
+        Preconditions.checkArgument(parallelSnapshotThreshold > 0, "parallelSnapshotThreshold must be positive");
+        this.snapshotPool = pool;
+        this.parallelSnapshotThreshold = parallelSnapshotThreshold;
     }
 
     public TimeSeries timeSeries(String measurementName, List<MetricTag> tags, List<IMeasurementField> fields) {
-        final MeasurementSeriesKey seriesKey = new MeasurementSeriesKey(measurementName, tags);
-        final InfluxSeries series = measurementSeries.computeIfAbsent(seriesKey, measurementSeriesKey -> {
-            final TimeSeries timeSeries = TimeSeries.withName(measurementName).withTags(tags).withFields(fields).build();
-            notifySeriesRegistered(timeSeries);
+        return (TimeSeries) timeSeriesEntry(measurementName, tags, fields).getSeries();
+    }
+
+    private SeriesEntry timeSeriesEntry(String measurementName, List<MetricTag> tags, List<IMeasurementField> fields) {
+        return timeSeriesEntry(measurementName, tags, fields, true);
+    }
 
-            return timeSeries;
+    private SeriesEntry timeSeriesEntry(String measurementName, List<MetricTag> tags, List<IMeasurementField> fields, boolean limited) {
+        final SeriesEntry entry = entryFor(measurementName, tags, limited, seriesTags -> new TimeSeries(measurementName, seriesTags, ImmutableList.copyOf(fields)), (createdEntry, seriesTags) -> {
         });
 
-        Preconditions.checkState(series instanceof TimeSeries, "Series of different type exists already");
-        return (TimeSeries) series;
+        Preconditions.checkState(entry.getSeries() instanceof TimeSeries, "Series of different type exists already");
+        return entry;
+    }
+
+    /**
+     * Returns the series identified by `measurementName` and `tags`, creating it with `factory` if necessary, for series
+     * other than time and event series. The series is not subject to cardinality limits.
+     *
+     * @param factory Creates the series from its tags.
+     */
+    InfluxSeries series(String measurementName, List<MetricTag> tags, Function<Map<String, String>, InfluxSeries> factory) {
+        return entryFor(measurementName, tags, false, factory::apply, (createdEntry, seriesTags) -> {
+        }).getSeries();
     }
 
     public <T> EventSeries<T> eventSeries(String measurementName, List<MetricTag> tags, Class<T> klass) {
-        final MeasurementSeriesKey seriesKey = new MeasurementSeriesKey(measurementName, tags);
-        final InfluxSeries series = measurementSeries.computeIfAbsent(seriesKey, measurementSeriesKey -> {
-            final EventSeries<T> eventSeries = EventSeries.fromPojo(klass, measurementName).withTags(tags).build();
-            notifySeriesRegistered(eventSeries);
+        return eventSeries(measurementName, tags, klass, EventSeries.DEFAULT_BUFFER_CAPACITY, EventSeries.OverflowPolicy.DROP_NEWEST);
+    }
 
-            return eventSeries;
+    /**
+     * Returns the event series identified by `measurementName` and `tags`, creating it if necessary.
+     * Creating an event series also registers the time series `measurementName`_dropped with the same tags, which
+     * reports the number of events dropped because the series' buffer was full.
+     *
+     * @param bufferCapacity The maximum number of events buffered between reports. Ignored if the series exists.
+     * @param overflowPolicy What to do with events committed while the buffer is full. Ignored if the series exists.
+     *                       {@link EventSeries.OverflowPolicy#BLOCK} needs a timeout and must be configured through
+     *                       {@link #eventSeries(String, List, Class, UnaryOperator)}.
+     */
+    public <T> EventSeries<T> eventSeries(String measurementName, List<MetricTag> tags, Class<T> klass, int bufferCapacity, EventSeries.OverflowPolicy overflowPolicy) {
+        Preconditions.checkArgument(overflowPolicy != EventSeries.OverflowPolicy.BLOCK, "BLOCK requires a timeout, use EventSeries.Builder#withBlockingBuffer");
+        return eventSeries(measurementName, tags, klass, builder -> builder.withBuffer(bufferCapacity, overflowPolicy));
+    }
+
+    /**
+     * Returns the event series identified by `measurementName` and `tags`, creating it if necessary.
+     * Creating an event series also registers the time series `measurementName`_dropped with the same tags, which
+     * reports the number of events dropped because the series' buffer was full, and, if the series buffers events
+     * off-heap, the time series `measurementName`_offheap_buffer, which reports the size limit and usage of the buffer.
+     * These series are evicted together with the event series.
+     *
+     * @param configuration Configures the series' builder, e.g. its buffer. Ignored if the series exists.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> EventSeries<T> eventSeries(String measurementName, List<MetricTag> tags, Class<T> klass, UnaryOperator<EventSeries.Builder<T>> configuration) {
+        return (EventSeries<T>) eventSeriesEntry(measurementName, tags, klass, configuration).getSeries();
+    }
+
+    private <T> SeriesEntry eventSeriesEntry(String measurementName, List<MetricTag> tags, Class<T> klass, UnaryOperator<EventSeries.Builder<T>> configuration) {
+        final SeriesEntry entry = entryFor(measurementName, tags, true, seriesTags -> configuration.apply(EventSeries.fromPojo(klass, measurementName).withSeriesTags(seriesTags)).build(), (createdEntry, seriesTags) -> {
+            final EventSeries<?> eventSeries = (EventSeries<?>) createdEntry.getSeries();
+            createdEntry.addCompanion(timeSeriesEntry(measurementName + "_dropped", seriesTags, ImmutableList.of(eventSeries.getDroppedEvents()), false));
+            if (!eventSeries.getOffHeapBufferFields().isEmpty()) {
+                createdEntry.addCompanion(timeSeriesEntry(measurementName + "_offheap_buffer", seriesTags, eventSeries.getOffHeapBufferFields(), false));
+            }
         });
 
-        Preconditions.checkState(series instanceof EventSeries, "Series of different type exists already");
-        return (EventSeries<T>) series;
+        Preconditions.checkState(entry.getSeries() instanceof EventSeries, "Series of different type exists already");
+        return entry;
+    }
+
+    /**
+     * Looks up the series identified by `measurementName` and `tags`, creating it with `factory` if necessary. If the
+     * measurement's hard limit is reached, the measurement's overflow series is looked up instead.
+     *
+     * @param limited   Whether the series counts towards the cardinality limits of its measurement.
+     * @param factory   Creates the series for the given tags, which are shared with the series' key.
+     * @param onCreated Called with the entry and tags of a series after it was created and registered.
+     */
+    private SeriesEntry entryFor(String measurementName, List<MetricTag> tags, boolean limited, Function<CompactTags, InfluxSeries> factory, BiConsumer<SeriesEntry, List<MetricTag>> onCreated) {
+        SeriesEntry entry = measurementSeries.get(new MeasurementSeriesKey(measurementName, CompactTags.forLookup(tags)));
+        if (entry == null) {
+            final MeasurementCardinality cardinality = limited ? cardinalityFor(measurementName) : null;
+            if (cardinality != null && !cardinality.tryAcquire()) {
+                return entryFor(measurementName, overflowTags(tags), false, factory, onCreated);
+            }
+
+            // the key stored in the map holds the interned tags of the series
+            final CompactTags seriesTags = CompactTags.of(tags);
+            final SeriesEntry[] createdEntry = new SeriesEntry[1];
+            entry = measurementSeries.computeIfAbsent(new MeasurementSeriesKey(CompactTags.intern(measurementName), seriesTags), key -> {
+                final InfluxSeries series = factory.apply(seriesTags);
+                notifySeriesRegistered(series);
+
+                return createdEntry[0] = new SeriesEntry(key, series, cardinality);
+            });
+
+            if (createdEntry[0] != null) {
+                onCreated.accept(createdEntry[0], tags);
+            } else if (cardinality != null) {
+                // another thread registered the series in the meantime
+                cardinality.release();
+            }
+        }
+
+        entry.touch(clockMillis);
+        return entry;
+    }
+
+    private static List<MetricTag> overflowTags(final List<MetricTag> tags) {
+        final ImmutableList.Builder<MetricTag> overflowTags = ImmutableList.builder();
+        for (MetricTag tag : tags) {
+            overflowTags.add(new MetricTag(tag.getTagName(), OVERFLOW_TAG_VALUE));
+        }
+        return overflowTags.build();
+    }
+
+    /**
+     * @return The series count of the measurement, or null if its number of series is not limited.
+     */
+    private MeasurementCardinality cardinalityFor(final String measurementName) {
+        final MeasurementCardinality cardinality = cardinalities.get(measurementName);
+        if (cardinality != null) {
+            return cardinality;
+        }
+
+        final int[] limits = cardinalityLimits.getOrDefault(measurementName, defaultCardinalityLimits);
+        if (limits == null) {
+            return null;
+        }
+
+        final MeasurementCardinality newCardinality = new MeasurementCardinality(measurementName, limits[0], limits[1]);
+        final MeasurementCardinality existingCardinality = cardinalities.putIfAbsent(measurementName, newCardinality);
+        if (existingCardinality != null) {
+            return existingCardinality;
+        }
+
+        timeSeriesEntry(CARDINALITY_MEASUREMENT, ImmutableList.of(new MetricTag("measurement", measurementName)), newCardinality.getFields(), false).pin();
+        return newCardinality;
+    }
+
+    /**
+     * Limits the number of series of every measurement without limits of its own, see
+     * {@link #setCardinalityLimits(String, int, int)}.
+     */
+    public void setCardinalityLimits(final int softLimit, final int hardLimit) {
+        MeasurementCardinality.checkLimits(softLimit, hardLimit);
+        defaultCardinalityLimits = new int[]{softLimit, hardLimit};
+        cardinalities.forEach((measurementName, cardinality) -> {
+            if (!cardinalityLimits.containsKey(measurementName)) {
+                cardinality.setLimits(softLimit, hardLimit);
+            }
+        });
+    }
+
+    /**
+     * Limits the number of series, i.e. tag combinations, of the measurement `measurementName`. Registering a series
+     * beyond the soft limit logs a warning; registering a series beyond the hard limit returns the measurement's
+     * overflow series instead. Series registered before the measurement was limited are not counted.
+     * <p>
+     * The time series {@value #CARDINALITY_MEASUREMENT}, tagged with the measurement name, reports the number of series
+     * (`series`), the number of registrations rejected by the hard limit (`rejected`) and the number of series
+     * registered beyond the soft limit (`over_soft_limit`).
+     * <p>
+     * The overflow series of a time series measurement reports the fields of the first rejected registration, values
+     * recorded to the fields of later rejected registrations are lost. Events committed to any rejected event series
+     * are reported by the overflow series.
+     */
+    public void setCardinalityLimits(final String measurementName, final int softLimit, final int hardLimit) {
+        MeasurementCardinality.checkLimits(softLimit, hardLimit);
+        cardinalityLimits.put(measurementName, new int[]{softLimit, hardLimit});
+        final MeasurementCardinality cardinality = cardinalities.get(measurementName);
+        if (cardinality != null) {
+            cardinality.setLimits(softLimit, hardLimit);
+        }
+    }
+
+    /**
+     * @return The number of series of the measurement `measurementName` that were collapsed into its overflow series.
+     */
+    public long getRejectedRegistrations(final String measurementName) {
+        final MeasurementCardinality cardinality = cardinalities.get(measurementName);
+        return cardinality != null ? cardinality.getRejectedRegistrations() : 0;
+    }
+
+    /**
+     * Resolves the time series identified by `measurementName` and `tags` once, see {@link #timeSeries(String, List, List)}.
+     */
+    public SeriesHandle<TimeSeries> bindTimeSeries(String measurementName, List<MetricTag> tags, List<IMeasurementField> fields) {
+        return new SeriesHandle<>(this, () -> timeSeriesEntry(measurementName, tags, fields));
+    }
+
+    /**
+     * Resolves the event series identified by `measurementName` and `tags` once, see
+     * {@link #eventSeries(String, List, Class)}.
+     */
+    public <T> SeriesHandle<EventSeries<T>> bindEventSeries(String measurementName, List<MetricTag> tags, Class<T> klass) {
+        return bindEventSeries(measurementName, tags, klass, builder -> builder.withBuffer(EventSeries.DEFAULT_BUFFER_CAPACITY, EventSeries.OverflowPolicy.DROP_NEWEST));
+    }
+
+    /**
+     * Resolves the event series identified by `measurementName` and `tags` once, see
+     * {@link #eventSeries(String, List, Class, UnaryOperator)}.
+     */
+    public <T> SeriesHandle<EventSeries<T>> bindEventSeries(String measurementName, List<MetricTag> tags, Class<T> klass, UnaryOperator<EventSeries.Builder<T>> configuration) {
+        return new SeriesHandle<>(this, () -> eventSeriesEntry(measurementName, tags, klass, configuration));
+    }
+
+    /**
+     * Keeps `series` from being evicted as idle, e.g. a series registered once by code that holds on to it. Does
+     * nothing if `series` is not registered.
+     */
+    public void pin(final InfluxSeries series) {
+        final SeriesEntry entry = measurementSeries.get(new MeasurementSeriesKey(series.getMeasurementName(), CompactTags.of(series.getTags())));
+        if (entry != null && entry.getSeries() == series) {
+            entry.pin();
+        }
+    }
+
+    /**
+     * Evicts the series which were neither looked up nor used within the idle series TTL and notifies listeners about
+     * their removal. Called by {@link ScheduledReporter} after every report; visits every series once and does not
+     * allocate per series.
+     * <p>
+     * A thread which looked up a series right before it was evicted may still record to the evicted series; those
+     * values are lost. Handles register the series again on their next use.
+     *
+     * @return The number of evicted series, not counting series registered alongside event series.
+     */
+    public int evictIdleSeries() {
+        final long now = System.currentTimeMillis();
+        clockMillis = now;
+        if (idleSeriesTtlMillis == 0) {
+            return 0;
+        }
+
+        int evictedSeries = 0;
+        for (SeriesEntry entry : measurementSeries.values()) {
+            if (entry.isPinned()) {
+                continue;
+            }
+            if (entry.getSeries().pollActivity()) {
+                entry.touch(now);
+                continue;
+            }
+            if (now - entry.getLastUsedMillis() >= idleSeriesTtlMillis && evict(entry)) {
+                entry.getCompanions().forEach(this::evict);
+                evictedSeries++;
+            }
+        }
+        return evictedSeries;
+    }
+
+    private boolean evict(final SeriesEntry entry) {
+        if (!measurementSeries.remove(entry.getKey(), entry)) {
+            return false;
+        }
+        entry.markEvicted();
+        if (entry.getCardinality() != null) {
+            entry.getCardinality().release();
+        }
+        notifySeriesRemoved(entry.getSeries());
+        return true;
+    }
+
+    long getClockMillis() {
+        return clockMillis;
     }
 
     private void notifySeriesRegistered(final InfluxSeries series) {
@@ -59,28 +425,114 @@ public class InfluxSeriesRegistry {
         registryListeners.remove(registryEventListener);
     }
 
-    private static class MeasurementSeriesKey {
-        private final Integer hashCode;
+    /**
+     * Splits the series into halves until a batch is small enough to be collected by a single task.
+     */
+    private static class SnapshotTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
 
-        public MeasurementSeriesKey(String measurementName, List<MetricTag> tags) {
-            hashCode = Objects.hashCode(measurementName, tags);
+        private final List<InfluxSeries> series;
+        private final long timestamp;
+        private final RegistrySnapshot.SeriesValues[] values;
+        private final int from;
+        private final int to;
+
+        SnapshotTask(final List<InfluxSeries> series, final long timestamp, final RegistrySnapshot.SeriesValues[] values, final int from, final int to) {
+            this.series = series;
+            this.timestamp = timestamp;
+            this.values = values;
+            this.from = from;
+            this.to = to;
         }
 
         @Override
-        public boolean equals(Object o) {
-            if (this == o) {
-                return true;
+        protected void compute() {
+            if (to - from <= SNAPSHOT_BATCH_SIZE) {
+                collect(series, timestamp, values, from, to);
+                return;
             }
-            if (o == null || getClass() != o.getClass()) {
-                return false;
+
+            final int middle = (from + to) >>> 1;
+            invokeAll(new SnapshotTask(series, timestamp, values, from, middle), new SnapshotTask(series, timestamp, values, middle, to));
+        }
+    }
+
+    /**
+     * A registered series and the time it was last looked up or used.
+     */
+    static final class SeriesEntry {
+        private final MeasurementSeriesKey key;
+        private final InfluxSeries series;
+        private final MeasurementCardinality cardinality;
+        private volatile List<SeriesEntry> companions = ImmutableList.of();
+        private volatile long lastUsedMillis = System.currentTimeMillis();
+        private volatile boolean pinned = false;
+        private volatile boolean evicted = false;
+
+        /**
+         * @param cardinality The count the series is included in, or null if it is not counted.
+         */
+        SeriesEntry(final MeasurementSeriesKey key, final InfluxSeries series, final MeasurementCardinality cardinality) {
+            this.key = key;
+            this.series = series;
+            this.cardinality = cardinality;
+        }
+
+        MeasurementSeriesKey getKey() {
+            return key;
+        }
+
+        InfluxSeries getSeries() {
+            return series;
+        }
+
+        MeasurementCardinality getCardinality() {
+            return cardinality;
+        }
+
+        /**
+         * Marks the series as used at `clockMillis`. Writes only if the clock advanced, so hot paths mostly read.
+         */
+        void touch(final long clockMillis) {
+            if (lastUsedMillis < clockMillis) {
+                lastUsedMillis = clockMillis;
             }
-            MeasurementSeriesKey that = (MeasurementSeriesKey) o;
-            return Objects.equal(hashCode, that.hashCode);
         }
 
-        @Override
-        public int hashCode() {
-            return Objects.hashCode(hashCode);
+        long getLastUsedMillis() {
+            return lastUsedMillis;
+        }
+
+        /**
+         * Ties `entry` to the lifetime of this entry, e.g. the series counting events dropped by an event series.
+         */
+        synchronized void addCompanion(final SeriesEntry entry) {
+            entry.pin();
+            // copied on write, since companions are only added when the series is created
+            companions = ImmutableList.<SeriesEntry>builder().addAll(companions).add(entry).build();
+        }
+
+        /**
+         * Keeps the series from being evicted on its own.
+         */
+        void pin() {
+            pinned = true;
+        }
+
+        boolean isPinned() {
+            return pinned;
+        }
+
+        List<SeriesEntry> getCompanions() {
+            return companions;
+        }
+
+        void markEvicted() {
+            evicted = true;
+        }
+
+        boolean isEvicted() {
+            return evicted;
         }
     }
 }
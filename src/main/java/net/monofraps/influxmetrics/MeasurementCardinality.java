@@ -0,0 +1,98 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import net.monofraps.influxmetrics.fields.IMeasurementField;
+import net.monofraps.influxmetrics.fields.LongGauge;
+import net.monofraps.influxmetrics.fields.StripedCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the series registered for one measurement against its soft and hard limit, see
+ * {@link InfluxSeriesRegistry#setCardinalityLimits(String, int, int)}. Series are counted with a CAS, so registries do
+ * not need a lock across measurements or series.
+ */
+class MeasurementCardinality {
+    private static final Logger logger = LoggerFactory.getLogger(MeasurementCardinality.class);
+
+    private final String measurementName;
+    private final AtomicInteger seriesCount = new AtomicInteger();
+    private final StripedCounter rejectedRegistrations = new StripedCounter("rejected");
+    private final StripedCounter softLimitExceeded = new StripedCounter("over_soft_limit");
+    private final AtomicBoolean softLimitWarned = new AtomicBoolean();
+    private final AtomicBoolean hardLimitWarned = new AtomicBoolean();
+    private volatile int softLimit;
+    private volatile int hardLimit;
+
+    MeasurementCardinality(final String measurementName, final int softLimit, final int hardLimit) {
+        this.measurementName = measurementName;
+        setLimits(softLimit, hardLimit);
+    }
+
+    static void checkLimits(final int softLimit, final int hardLimit) {
+        Preconditions.checkArgument(hardLimit > 0, "hardLimit must be positive");
+        Preconditions.checkArgument(softLimit > 0 && softLimit <= hardLimit, "softLimit must be positive and not exceed hardLimit");
+    }
+
+    void setLimits(final int softLimit, final int hardLimit) {
+        checkLimits(softLimit, hardLimit);
+        this.softLimit = softLimit;
+        this.hardLimit = hardLimit;
+    }
+
+    /**
+     * Counts a new series unless the hard limit is reached. Series beyond the soft limit are counted, but logged.
+     *
+     * @return False if the series is rejected.
+     */
+    boolean tryAcquire() {
+        while (true) {
+            final int count = seriesCount.get();
+            if (count >= hardLimit) {
+                rejectedRegistrations.inc();
+                if (hardLimitWarned.compareAndSet(false, true)) {
+                    logger.warn("Measurement {} reached its limit of {} series, further series are collapsed into its {} series", measurementName, hardLimit, InfluxSeriesRegistry.OVERFLOW_TAG_VALUE);
+                }
+                return false;
+            }
+
+            if (seriesCount.compareAndSet(count, count + 1)) {
+                if (count >= softLimit) {
+                    softLimitExceeded.inc();
+                    if (softLimitWarned.compareAndSet(false, true)) {
+                        logger.warn("Measurement {} exceeded its soft limit of {} series", measurementName, softLimit);
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Uncounts a series that was not registered after all or was evicted.
+     */
+    void release() {
+        seriesCount.decrementAndGet();
+    }
+
+    int getSeriesCount() {
+        return seriesCount.get();
+    }
+
+    long getRejectedRegistrations() {
+        return rejectedRegistrations.getLongValue();
+    }
+
+    /**
+     * @return The number of series (`series`), the number of rejected registrations (`rejected`) and the number of
+     * registrations beyond the soft limit (`over_soft_limit`).
+     */
+    List<IMeasurementField> getFields() {
+        return ImmutableList.of(new LongGauge("series", seriesCount::get), rejectedRegistrations, softLimitExceeded);
+    }
+}
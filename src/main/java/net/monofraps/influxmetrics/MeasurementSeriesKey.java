@@ -0,0 +1,47 @@
+package net.monofraps.influxmetrics;
+
+/**
+ * Identifies a series in {@link InfluxSeriesRegistry} by its measurement name and tags. Tags are compared regardless of
+ * the order they were passed in, see {@link CompactTags}.
+ */
+final class MeasurementSeriesKey {
+    private final String measurementName;
+    private final CompactTags tags;
+    private final int hashCode;
+
+    MeasurementSeriesKey(final String measurementName, final CompactTags tags) {
+        this.measurementName = measurementName;
+        this.tags = tags;
+        this.hashCode = 31 * measurementName.hashCode() + tags.hashCode();
+    }
+
+    String getMeasurementName() {
+        return measurementName;
+    }
+
+    CompactTags getTags() {
+        return tags;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        MeasurementSeriesKey that = (MeasurementSeriesKey) o;
+        return hashCode == that.hashCode && measurementName.equals(that.measurementName) && tags.equals(that.tags);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return measurementName + tags;
+    }
+}
@@ -0,0 +1,80 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of the series of a registry, collected against a single timestamp by
+ * {@link InfluxSeriesRegistry#snapshot()}.
+ * <p>
+ * Collecting a series takes the values of its interval fields, so a reporter must either {@link #commit()} the
+ * snapshot once it was written or {@link #rollback()} it to have the values reported again.
+ */
+public final class RegistrySnapshot {
+    private final long timestamp;
+    private final List<SeriesValues> series;
+
+    RegistrySnapshot(final long timestamp, final List<SeriesValues> series) {
+        this.timestamp = timestamp;
+        this.series = ImmutableList.copyOf(series);
+    }
+
+    /**
+     * @return The time in milliseconds the values of time series and rollups were collected at.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return The collected series in registry order.
+     */
+    public List<SeriesValues> getSeries() {
+        return series;
+    }
+
+    /**
+     * See {@link InfluxSeries#commitValueSets()}.
+     */
+    public void commit() {
+        series.forEach(values -> values.getSeries().commitValueSets());
+    }
+
+    /**
+     * See {@link InfluxSeries#rollbackValueSets()}.
+     */
+    public void rollback() {
+        series.forEach(values -> values.getSeries().rollbackValueSets());
+    }
+
+    /**
+     * The data points collected from a single series.
+     */
+    public static final class SeriesValues {
+        private final InfluxSeries series;
+        private final List<DataPoint> dataPoints;
+
+        SeriesValues(final InfluxSeries series, final List<DataPoint> dataPoints) {
+            this.series = series;
+            this.dataPoints = dataPoints;
+        }
+
+        public InfluxSeries getSeries() {
+            return series;
+        }
+
+        public String getMeasurementName() {
+            return series.getMeasurementName();
+        }
+
+        public Map<String, String> getTags() {
+            return series.getTags();
+        }
+
+        public List<DataPoint> getDataPoints() {
+            return dataPoints;
+        }
+    }
+}
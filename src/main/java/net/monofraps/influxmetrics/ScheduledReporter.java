@@ -46,6 +46,7 @@ public abstract class ScheduledReporter {
 		Stopwatch stopwatch = Stopwatch.createStarted();
 		synchronized (this) {
 			registries.forEach(this::report);
+			registries.forEach(InfluxSeriesRegistry::evictIdleSeries);
 		}
 		stopwatch.stop();
 
@@ -60,20 +61,37 @@ public abstract class ScheduledReporter {
 
 	protected void postReport(long reportTime) {}
 
+	/**
+	 * Stops the scheduled reports and reports once more what was committed since the last report, unless a scheduled
+	 * report is still running.
+	 */
 	public void stop() {
 		executor.shutdown();
 
+		boolean terminated = false;
 		try {
-			if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+			terminated = executor.awaitTermination(1, TimeUnit.SECONDS);
+			if (!terminated) {
 				executor.shutdownNow();
-				if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
-					logger.error("ScheduledExecutorService did not terminate");
+				terminated = executor.awaitTermination(1, TimeUnit.SECONDS);
+				if (!terminated) {
+					logger.error("ScheduledExecutorService did not terminate, skipping the final report");
 				}
 			}
 		} catch (InterruptedException ie) {
 			executor.shutdownNow();
 			Thread.currentThread().interrupt();
 		}
+
+		// report what was committed since the last report, e.g. events still buffered or staged by other threads; a
+		// report that is still running would block the final one and race with it
+		if (terminated && reportIntervalInMs > 0) {
+			try {
+				report();
+			} catch (RuntimeException ex) {
+				logger.error("RuntimeException thrown from final {}#report. Exception was suppressed.", getClass().getSimpleName(), ex);
+			}
+		}
 	}
 
 	protected abstract void report(final InfluxSeriesRegistry registry);
@@ -0,0 +1,37 @@
+package net.monofraps.influxmetrics;
+
+import java.util.function.Supplier;
+
+/**
+ * A series resolved once by {@link InfluxSeriesRegistry}, see {@link InfluxSeriesRegistry#bindTimeSeries} and
+ * {@link InfluxSeriesRegistry#bindEventSeries}. Code recording to a series on a hot path should keep a handle rather
+ * than looking the series up by name and tags every time, which allocates a lookup key and usually a tag list.
+ * Getting the series from a handle does not allocate.
+ * <p>
+ * Getting the series also keeps it from being evicted as idle. If it was evicted nevertheless, the handle registers
+ * it again.
+ *
+ * @param <S> The type of the series.
+ */
+public class SeriesHandle<S extends InfluxSeries> {
+    private final InfluxSeriesRegistry registry;
+    private final Supplier<InfluxSeriesRegistry.SeriesEntry> resolver;
+    private volatile InfluxSeriesRegistry.SeriesEntry entry;
+
+    SeriesHandle(final InfluxSeriesRegistry registry, final Supplier<InfluxSeriesRegistry.SeriesEntry> resolver) {
+        this.registry = registry;
+        this.resolver = resolver;
+        this.entry = resolver.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    public S get() {
+        InfluxSeriesRegistry.SeriesEntry currentEntry = entry;
+        if (currentEntry.isEvicted()) {
+            currentEntry = entry = resolver.get();
+        } else {
+            currentEntry.touch(registry.getClockMillis());
+        }
+        return (S) currentEntry.getSeries();
+    }
+}
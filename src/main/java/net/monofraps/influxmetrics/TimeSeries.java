@@ -1,27 +1,49 @@
 package net.monofraps.influxmetrics;
 
 import com.google.common.collect.ImmutableList;
+import net.monofraps.influxmetrics.fields.DeltaField;
+import net.monofraps.influxmetrics.fields.DoubleGauge;
+import net.monofraps.influxmetrics.fields.FieldSink;
+import net.monofraps.influxmetrics.fields.Gauge;
+import net.monofraps.influxmetrics.fields.ICompositeMeasurementField;
+import net.monofraps.influxmetrics.fields.ICumulativeMeasurementField;
+import net.monofraps.influxmetrics.fields.IDoubleMeasurementField;
+import net.monofraps.influxmetrics.fields.ILongMeasurementField;
 import net.monofraps.influxmetrics.fields.IMeasurementField;
+import net.monofraps.influxmetrics.fields.ITransactionalMeasurementField;
+import net.monofraps.influxmetrics.fields.LongGauge;
+import net.monofraps.influxmetrics.fields.TimeBudgetedField;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 public class TimeSeries implements InfluxSeries {
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final String measurementName;
     private final Map<String, String> tags;
     private final List<IMeasurementField> fields;
+    private final List<ITransactionalMeasurementField> transactionalFields;
+    private final List<DeltaField> deltaFields;
+    private volatile long lastFingerprint;
+    private volatile boolean active;
 
     public TimeSeries(String measurementName, List<MetricTag> tags, List<IMeasurementField> fields) {
-        this.measurementName = measurementName;
-        this.tags = tags.stream().collect(Collectors.toMap(MetricTag::getTagName, MetricTag::getTagValue));
+        this(measurementName, CompactTags.of(tags), fields);
+    }
+
+    TimeSeries(String measurementName, CompactTags tags, List<IMeasurementField> fields) {
+        this.measurementName = CompactTags.intern(measurementName);
+        this.tags = tags;
         this.fields = fields;
+        // shares the empty list between all series without transactional fields
+        this.transactionalFields = ImmutableList.copyOf(fields.stream().filter(field -> field instanceof ITransactionalMeasurementField).map(field -> (ITransactionalMeasurementField) field).iterator());
+        this.deltaFields = ImmutableList.copyOf(fields.stream().filter(field -> field instanceof DeltaField).map(field -> (DeltaField) field).iterator());
     }
 
     public static Builder withName(final String measurementName) {
@@ -40,20 +62,118 @@ public class TimeSeries implements InfluxSeries {
 
     @Override
     public Collection<DataPoint> getValueSets() {
-        return ImmutableList.of(new DataPoint(System.currentTimeMillis(), TimeUnit.MILLISECONDS, fields.stream().collect(Collectors.toMap(IMeasurementField::getName, field -> {
+        return getValueSets(System.currentTimeMillis());
+    }
+
+    @Override
+    public Collection<DataPoint> getValueSets(final long timestamp) {
+        final FieldValues values = new FieldValues(fields.size());
+        for (IMeasurementField field : fields) {
+            if (field instanceof ILongMeasurementField) {
+                values.putLong(field.getName(), ((ILongMeasurementField) field).getLongValue());
+                continue;
+            }
+            if (field instanceof IDoubleMeasurementField) {
+                values.putDouble(field.getName(), ((IDoubleMeasurementField) field).getDoubleValue());
+                continue;
+            }
+            if (field instanceof ICompositeMeasurementField) {
+                ((ICompositeMeasurementField) field).writeTo(values);
+                continue;
+            }
+
             Object value = field.getValue();
-            if(value == null) {
+            if (value == null) {
                 logger.error("IMeasurementField::getValue must not return null in series {} for field {}", measurementName, field.getName());
-                return "null";
+                value = "null";
+            }
+
+            values.put(field.getName(), value);
+        }
+
+        trackActivity(values);
+        return ImmutableList.of(new DataPoint(timestamp, TimeUnit.MILLISECONDS, values));
+    }
+
+    /**
+     * Fields are updated without involving the series, so the series counts as used if a collected value changed since
+     * the previous collection or a delta field reports a change.
+     */
+    private void trackActivity(final FieldValues values) {
+        final long fingerprint = values.fingerprint();
+        final long previousFingerprint = lastFingerprint;
+        lastFingerprint = fingerprint;
+        if (active) {
+            return;
+        }
+        if (fingerprint != previousFingerprint) {
+            active = true;
+            return;
+        }
+        for (DeltaField deltaField : deltaFields) {
+            if (deltaField.getValue() != 0) {
+                active = true;
+                return;
             }
+        }
+    }
 
-            return value;
-        }))));
+    /**
+     * @return Whether the series reported changed values since the last call, see {@link #getValueSets(long)}.
+     */
+    @Override
+    public boolean pollActivity() {
+        final boolean wasActive = active;
+        if (wasActive) {
+            active = false;
+        }
+        return wasActive;
     }
 
     @Override
     public List<String> getFieldNames() {
-        return fields.stream().map(IMeasurementField::getName).collect(Collectors.toList());
+        final List<String> fieldNames = new ArrayList<>(fields.size());
+        for (IMeasurementField field : fields) {
+            if (field instanceof ICompositeMeasurementField) {
+                fieldNames.addAll(((ICompositeMeasurementField) field).getFieldNames());
+            } else {
+                fieldNames.add(field.getName());
+            }
+        }
+
+        return fieldNames;
+    }
+
+    @Override
+    public void commitValueSets() {
+        transactionalFields.forEach(ITransactionalMeasurementField::commit);
+    }
+
+    @Override
+    public void rollbackValueSets() {
+        transactionalFields.forEach(ITransactionalMeasurementField::rollback);
+    }
+
+    /**
+     * Reads the current value of every field without affecting what is reported, i.e. without resetting interval
+     * fields or marking deltas as reported. Composite fields are expanded into their fields, see
+     * {@link ICompositeMeasurementField#peekTo(FieldSink)}. Null values are reported as "null".
+     *
+     * @return Map of field names and current values.
+     */
+    public Map<String, Object> peekFieldValues() {
+        final Map<String, Object> values = new HashMap<>(fields.size());
+        final FieldSink sink = FieldSink.forMap(values);
+        for (IMeasurementField field : fields) {
+            if (field instanceof ICompositeMeasurementField) {
+                ((ICompositeMeasurementField) field).peekTo(sink);
+            } else {
+                values.put(field.getName(), field.getValue());
+            }
+        }
+        values.replaceAll((name, value) -> value != null ? value : "null");
+
+        return values;
     }
 
     public List<IMeasurementField> getFields() {
@@ -64,6 +184,8 @@ public class TimeSeries implements InfluxSeries {
         private final String measurementDefinition;
         private List<MetricTag> tags = new ArrayList<>();
         private List<IMeasurementField> fields = new ArrayList<>();
+        private boolean deltaTemporality = false;
+        private long collectionBudgetNanos = 0;
 
         public Builder(final String measurementDefinition) {
             this.measurementDefinition = measurementDefinition;
@@ -89,8 +211,40 @@ public class TimeSeries implements InfluxSeries {
             return this;
         }
 
+        /**
+         * Reports the change since the last written report for all cumulative long fields (e.g. counters, see
+         * {@link ICumulativeMeasurementField}) of the series instead of their running totals. See {@link DeltaField}.
+         */
+        public Builder withDeltaTemporality() {
+            this.deltaTemporality = true;
+            return this;
+        }
+
+        /**
+         * Reads the gauges of the series ({@link Gauge}, {@link LongGauge} and {@link DoubleGauge}) with a time budget
+         * each, reporting their last known value if they are slow. See {@link TimeBudgetedField}.
+         */
+        public Builder withCollectionBudget(final long budget, final TimeUnit unit) {
+            this.collectionBudgetNanos = unit.toNanos(budget);
+            return this;
+        }
+
         public TimeSeries build() {
-            return new TimeSeries(measurementDefinition, tags, fields);
+            if (!deltaTemporality && collectionBudgetNanos == 0) {
+                return new TimeSeries(measurementDefinition, tags, fields);
+            }
+
+            final List<IMeasurementField> wrappedFields = new ArrayList<>(fields.size());
+            for (IMeasurementField field : fields) {
+                if (deltaTemporality && field instanceof ICumulativeMeasurementField) {
+                    field = new DeltaField((ICumulativeMeasurementField) field);
+                }
+                if (collectionBudgetNanos > 0 && (field instanceof Gauge || field instanceof LongGauge || field instanceof DoubleGauge)) {
+                    field = new TimeBudgetedField(field, collectionBudgetNanos, TimeUnit.NANOSECONDS);
+                }
+                wrappedFields.add(field);
+            }
+            return new TimeSeries(measurementDefinition, tags, wrappedFields);
         }
     }
 }
@@ -2,7 +2,7 @@ package net.monofraps.influxmetrics.fields;
 
 import java.util.concurrent.atomic.AtomicLong;
 
-public class Counter extends AbstractMeasurementField {
+public class Counter extends AbstractMeasurementField implements ICumulativeMeasurementField {
     private final AtomicLong currentValue = new AtomicLong(0);
 
     public Counter(final String name) {
@@ -17,6 +17,11 @@ public class Counter extends AbstractMeasurementField {
         currentValue.decrementAndGet();
     }
 
+    @Override
+    public long getLongValue() {
+        return currentValue.get();
+    }
+
     @Override
     public Long getValue() {
         return currentValue.get();
@@ -0,0 +1,57 @@
+package net.monofraps.influxmetrics.fields;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * Reports the change of a cumulative long field (e.g. a {@link Counter}) since the last successfully written report
+ * instead of its running total.
+ * <p>
+ * If a report fails to be written, the next report includes the change of the failed interval as well, so no
+ * increments are lost. The first report contains the change since the wrapped field was created (i.e. since 0).
+ */
+public class DeltaField extends AbstractMeasurementField implements ICompositeMeasurementField, ITransactionalMeasurementField {
+    private final ILongMeasurementField field;
+    private final LongDelta delta = new LongDelta();
+    private final List<String> fieldNames;
+
+    public DeltaField(final ILongMeasurementField field) {
+        super(field.getName());
+        this.field = field;
+        this.fieldNames = ImmutableList.of(field.getName());
+    }
+
+    /**
+     * @return The change since the last committed report.
+     */
+    @Override
+    public Long getValue() {
+        return delta.peek(field.getLongValue());
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    @Override
+    public void writeTo(final FieldSink sink) {
+        sink.putLong(getName(), delta.collect(field.getLongValue()));
+    }
+
+    @Override
+    public void peekTo(final FieldSink sink) {
+        sink.putLong(getName(), getValue());
+    }
+
+    @Override
+    public void commit() {
+        delta.commit();
+    }
+
+    @Override
+    public void rollback() {
+        delta.rollback();
+    }
+}
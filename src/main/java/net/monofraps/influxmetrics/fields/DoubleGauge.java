@@ -0,0 +1,22 @@
+package net.monofraps.influxmetrics.fields;
+
+import java.util.function.DoubleSupplier;
+
+public class DoubleGauge extends AbstractMeasurementField implements IDoubleMeasurementField {
+    private final DoubleSupplier supplier;
+
+    public DoubleGauge(String name, DoubleSupplier supplier) {
+        super(name);
+        this.supplier = supplier;
+    }
+
+    @Override
+    public double getDoubleValue() {
+        return supplier.getAsDouble();
+    }
+
+    @Override
+    public Double getValue() {
+        return supplier.getAsDouble();
+    }
+}
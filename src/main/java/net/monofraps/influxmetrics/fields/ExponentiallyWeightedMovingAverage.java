@@ -0,0 +1,47 @@
+package net.monofraps.influxmetrics.fields;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An exponentially weighted moving average of an event rate, in the style of the UNIX load average.
+ * <p>
+ * Not thread-safe for concurrent ticks; callers must make sure only one thread ticks at a time.
+ */
+class ExponentiallyWeightedMovingAverage {
+    private final double alpha;
+    private final long tickInterval;
+    private volatile boolean initialized = false;
+    private volatile double rate = 0.0;
+
+    /**
+     * @param minutes      The averaging window in minutes.
+     * @param tickInterval The interval between two ticks in nanoseconds.
+     */
+    ExponentiallyWeightedMovingAverage(final int minutes, final long tickInterval) {
+        this.alpha = 1 - Math.exp(-tickInterval / (double) TimeUnit.MINUTES.toNanos(minutes));
+        this.tickInterval = tickInterval;
+    }
+
+    /**
+     * Advances the average by one tick.
+     *
+     * @param events The number of events that occurred during the tick.
+     */
+    void tick(final long events) {
+        final double instantRate = events / (double) tickInterval;
+        if (initialized) {
+            rate += alpha * (instantRate - rate);
+        } else {
+            rate = instantRate;
+            initialized = true;
+        }
+    }
+
+    /**
+     * @param unit The time unit to express the rate in.
+     * @return The number of events per `unit`.
+     */
+    double getRate(final TimeUnit unit) {
+        return rate * unit.toNanos(1);
+    }
+}
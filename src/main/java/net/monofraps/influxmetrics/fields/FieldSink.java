@@ -0,0 +1,38 @@
+package net.monofraps.influxmetrics.fields;
+
+import java.util.Map;
+
+/**
+ * Receives field values during collection and encoding.
+ * Primitive values are passed through unboxed; everything else goes through {@link #put(String, Object)}.
+ */
+public interface FieldSink {
+    void putLong(String name, long value);
+
+    void putDouble(String name, double value);
+
+    void put(String name, Object value);
+
+    /**
+     * @param map The map to put values into.
+     * @return A sink that stores (and boxes) all values in `map`.
+     */
+    static FieldSink forMap(final Map<String, Object> map) {
+        return new FieldSink() {
+            @Override
+            public void putLong(String name, long value) {
+                map.put(name, value);
+            }
+
+            @Override
+            public void putDouble(String name, double value) {
+                map.put(name, value);
+            }
+
+            @Override
+            public void put(String name, Object value) {
+                map.put(name, value);
+            }
+        };
+    }
+}
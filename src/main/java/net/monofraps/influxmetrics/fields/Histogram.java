@@ -0,0 +1,276 @@
+package net.monofraps.influxmetrics.fields;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the distribution of non-negative long values (e.g. latencies) in log/linear buckets.
+ * <p>
+ * Values below 2^significantBits are counted exactly. Above that, every power of two is split into
+ * 2^(significantBits - 1) linear sub-buckets, which bounds the relative error of reported percentiles by
+ * 2^-(significantBits - 1). Values above the highest trackable value are counted in the last bucket.
+ * <p>
+ * Recording is lock-free and does not allocate. Reporting does not block recording threads; a value recorded while a
+ * report is in progress ends up in either the current or the next interval.
+ * <p>
+ * Expands into the fields `name`_count, _min, _max, _mean, _p50, _p90, _p99 and _p999.
+ */
+public class Histogram extends AbstractMeasurementField implements ICompositeMeasurementField {
+    public static final int DEFAULT_SIGNIFICANT_BITS = 7;
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_SUFFIXES = {"_p50", "_p90", "_p99", "_p999"};
+
+    private final int significantBits;
+    private final long highestTrackableValue;
+    private final boolean resetOnReport;
+    private final AtomicLongArray counts;
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+    private final List<String> fieldNames;
+
+    /**
+     * Creates a histogram which tracks all non-negative long values and resets on every report.
+     *
+     * @param name The field name prefix.
+     */
+    public Histogram(final String name) {
+        this(name, Long.MAX_VALUE, DEFAULT_SIGNIFICANT_BITS, true);
+    }
+
+    /**
+     * @param name                  The field name prefix.
+     * @param highestTrackableValue The highest value to track exactly. Larger values are counted in the last bucket.
+     * @param significantBits       Number of significant bits to keep per value, between 1 and 16.
+     * @param resetOnReport         Whether to start a new interval every time the histogram is reported.
+     */
+    public Histogram(final String name, final long highestTrackableValue, final int significantBits, final boolean resetOnReport) {
+        super(name);
+        Preconditions.checkArgument(highestTrackableValue > 0, "highestTrackableValue must be positive");
+        Preconditions.checkArgument(significantBits >= 1 && significantBits <= 16, "significantBits must be between 1 and 16");
+
+        this.significantBits = significantBits;
+        this.highestTrackableValue = highestTrackableValue;
+        this.resetOnReport = resetOnReport;
+        this.counts = new AtomicLongArray(bucketIndex(highestTrackableValue, significantBits) + 1);
+
+        final ImmutableList.Builder<String> names = ImmutableList.<String>builder().add(name + "_count", name + "_min", name + "_max", name + "_mean");
+        for (String suffix : PERCENTILE_SUFFIXES) {
+            names.add(name + suffix);
+        }
+        this.fieldNames = names.build();
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value The value to record.
+     */
+    public void record(final long value) {
+        final long clampedValue = value < 0 ? 0 : value;
+
+        counts.incrementAndGet(bucketIndex(Math.min(clampedValue, highestTrackableValue), significantBits));
+        sum.add(clampedValue);
+
+        long currentMin;
+        while (clampedValue < (currentMin = min.get()) && !min.compareAndSet(currentMin, clampedValue)) {
+        }
+
+        long currentMax;
+        while (clampedValue > (currentMax = max.get()) && !max.compareAndSet(currentMax, clampedValue)) {
+        }
+    }
+
+    /**
+     * Takes a snapshot of the current interval without resetting the histogram.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot getSnapshot() {
+        final long[] snapshotCounts = new long[counts.length()];
+        for (int i = 0; i < snapshotCounts.length; i++) {
+            snapshotCounts[i] = counts.get(i);
+        }
+
+        return new Snapshot(significantBits, snapshotCounts, sum.sum(), min.get(), max.get());
+    }
+
+    /**
+     * Takes a snapshot of the current interval and starts a new one.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot getSnapshotAndReset() {
+        final long[] snapshotCounts = new long[counts.length()];
+        for (int i = 0; i < snapshotCounts.length; i++) {
+            snapshotCounts[i] = counts.getAndSet(i, 0);
+        }
+
+        return new Snapshot(significantBits, snapshotCounts, sum.sumThenReset(), min.getAndSet(Long.MAX_VALUE), max.getAndSet(Long.MIN_VALUE));
+    }
+
+    /**
+     * @return The number of values recorded in the current interval.
+     */
+    @Override
+    public Long getValue() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+
+        return count;
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    @Override
+    public void writeTo(final FieldSink sink) {
+        final Snapshot snapshot = resetOnReport ? getSnapshotAndReset() : getSnapshot();
+        snapshot.writeTo(fieldNames, sink);
+    }
+
+    @Override
+    public void peekTo(final FieldSink sink) {
+        getSnapshot().writeTo(fieldNames, sink);
+    }
+
+    static int bucketIndex(final long value, final int significantBits) {
+        final int subBucketCount = 1 << significantBits;
+        if (value < subBucketCount) {
+            return (int) value;
+        }
+
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - (significantBits - 1);
+        final int subBucketHalfCount = subBucketCount >> 1;
+        return subBucketCount + (shift - 1) * subBucketHalfCount + ((int) (value >>> shift) - subBucketHalfCount);
+    }
+
+    static long bucketLowerBound(final int index, final int significantBits) {
+        final int subBucketCount = 1 << significantBits;
+        if (index < subBucketCount) {
+            return index;
+        }
+
+        final int subBucketHalfCount = subBucketCount >> 1;
+        final int shift = (index - subBucketCount) / subBucketHalfCount + 1;
+        return (long) ((index - subBucketCount) % subBucketHalfCount + subBucketHalfCount) << shift;
+    }
+
+    static long bucketWidth(final int index, final int significantBits) {
+        final int subBucketCount = 1 << significantBits;
+        if (index < subBucketCount) {
+            return 1;
+        }
+
+        return 1L << ((index - subBucketCount) / (subBucketCount >> 1) + 1);
+    }
+
+    /**
+     * An immutable copy of a histogram interval.
+     */
+    public static class Snapshot {
+        private final int significantBits;
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        Snapshot(final int significantBits, final long[] counts, final long sum, final long min, final long max) {
+            this.significantBits = significantBits;
+            this.counts = counts;
+            this.sum = sum;
+
+            long totalCount = 0;
+            int lowestIndex = -1;
+            int highestIndex = -1;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] != 0) {
+                    totalCount += counts[i];
+                    highestIndex = i;
+                    if (lowestIndex < 0) {
+                        lowestIndex = i;
+                    }
+                }
+            }
+            this.count = totalCount;
+
+            // min and max are tracked separately from the buckets and may miss values that raced with a reset
+            if (totalCount == 0) {
+                this.min = 0;
+                this.max = 0;
+            } else {
+                this.min = min == Long.MAX_VALUE ? bucketLowerBound(lowestIndex, significantBits) : min;
+                this.max = max == Long.MIN_VALUE ? bucketLowerBound(highestIndex, significantBits) + bucketWidth(highestIndex, significantBits) - 1 : max;
+            }
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the value below which `percentile` percent of all recorded values fall.
+         *
+         * @param percentile The percentile, between 0 and 100.
+         * @return The value at the given percentile or 0 if no values were recorded.
+         */
+        public long getValueAtPercentile(final double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            final long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    final long value = bucketLowerBound(i, significantBits) + (bucketWidth(i, significantBits) - 1) / 2;
+                    return Math.max(min, Math.min(max, value));
+                }
+            }
+
+            return max;
+        }
+
+        /**
+         * @param fieldNames The field names in the order count, min, max, mean, followed by the percentile fields.
+         * @param sink       The sink to write values into.
+         */
+        void writeTo(final List<String> fieldNames, final FieldSink sink) {
+            sink.putLong(fieldNames.get(0), count);
+            sink.putLong(fieldNames.get(1), min);
+            sink.putLong(fieldNames.get(2), max);
+            sink.putDouble(fieldNames.get(3), getMean());
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                sink.putLong(fieldNames.get(4 + i), getValueAtPercentile(PERCENTILES[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package net.monofraps.influxmetrics.fields;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A measurement field that expands into several values per data point, e.g. the count and percentiles of a histogram.
+ * <p>
+ * Series expand composite fields using {@link #writeTo(FieldSink)}. {@link #getValue()} only returns the field's primary
+ * value and is not used for reporting.
+ */
+public interface ICompositeMeasurementField extends IMeasurementField {
+    /**
+     * @return The names of all values this field expands into.
+     */
+    List<String> getFieldNames();
+
+    /**
+     * Writes the current values of this field into `sink`.
+     * Fields which reset on report do so when this method is called.
+     *
+     * @param sink The sink to write values into, using the names returned by {@link #getFieldNames()}.
+     */
+    void writeTo(FieldSink sink);
+
+    /**
+     * Writes the current values of this field into `sink` without resetting the field or marking values as reported,
+     * e.g. for JMX. Fields whose {@link #writeTo(FieldSink)} resets the field or tracks what was reported must override
+     * this method.
+     *
+     * @param sink The sink to write values into, using the names returned by {@link #getFieldNames()}.
+     */
+    default void peekTo(FieldSink sink) {
+        writeTo(sink);
+    }
+
+    /**
+     * Collects the current values of this field into a map, boxing primitive values.
+     * Fields which reset on report do so when this method is called.
+     *
+     * @return Map of field names (as returned by {@link #getFieldNames()}) and values.
+     */
+    default Map<String, Object> getValues() {
+        final Map<String, Object> values = new HashMap<>(getFieldNames().size());
+        writeTo(FieldSink.forMap(values));
+
+        return values;
+    }
+}
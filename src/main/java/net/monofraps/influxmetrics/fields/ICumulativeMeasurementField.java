@@ -0,0 +1,9 @@
+package net.monofraps.influxmetrics.fields;
+
+/**
+ * A long field whose value is a running total, e.g. the number of requests since start, as opposed to a point-in-time
+ * value like a queue depth. Series with delta temporality report the change of cumulative fields, see
+ * {@link DeltaField}.
+ */
+public interface ICumulativeMeasurementField extends ILongMeasurementField {
+}
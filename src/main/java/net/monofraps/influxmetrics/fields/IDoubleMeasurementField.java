@@ -0,0 +1,9 @@
+package net.monofraps.influxmetrics.fields;
+
+/**
+ * A measurement field with a primitive double value. Series read the value through {@link #getDoubleValue()} to avoid
+ * boxing; {@link #getValue()} remains available as fallback.
+ */
+public interface IDoubleMeasurementField extends IMeasurementField {
+    double getDoubleValue();
+}
@@ -0,0 +1,9 @@
+package net.monofraps.influxmetrics.fields;
+
+/**
+ * A measurement field with a primitive long value. Series read the value through {@link #getLongValue()} to avoid
+ * boxing; {@link #getValue()} remains available as fallback.
+ */
+public interface ILongMeasurementField extends IMeasurementField {
+    long getLongValue();
+}
@@ -0,0 +1,14 @@
+package net.monofraps.influxmetrics.fields;
+
+/**
+ * A measurement field whose reported values depend on the values that were reported successfully before, e.g. a field
+ * reporting per-interval deltas.
+ * <p>
+ * After collecting a field's values, reporters call {@link #commit()} once the values were written or
+ * {@link #rollback()} if writing failed, in which case the next collection must include the uncommitted values again.
+ */
+public interface ITransactionalMeasurementField extends IMeasurementField {
+    void commit();
+
+    void rollback();
+}
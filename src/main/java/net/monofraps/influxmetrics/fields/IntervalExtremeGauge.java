@@ -0,0 +1,62 @@
+package net.monofraps.influxmetrics.fields;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base class of gauges that report the most extreme value recorded during a reporting interval.
+ * <p>
+ * Updates are lock-free: the latest value is published with a lazy set and the extreme value is only written (with a
+ * CAS loop) when it changes. Reporting atomically swaps the extreme value for the latest recorded value, which seeds the
+ * next interval; an interval without updates therefore reports the latest recorded value.
+ */
+abstract class IntervalExtremeGauge extends AbstractMeasurementField implements ICompositeMeasurementField {
+    private final AtomicLong extremeValue;
+    private final AtomicLong latestValue;
+    private final List<String> fieldNames;
+
+    protected IntervalExtremeGauge(final String name, final long initialValue) {
+        super(name);
+        this.extremeValue = new AtomicLong(initialValue);
+        this.latestValue = new AtomicLong(initialValue);
+        this.fieldNames = ImmutableList.of(name);
+    }
+
+    /**
+     * @return true if `candidate` should replace `current` as extreme value.
+     */
+    protected abstract boolean isMoreExtreme(long candidate, long current);
+
+    public void update(final long value) {
+        latestValue.lazySet(value);
+
+        long current;
+        while (isMoreExtreme(value, current = extremeValue.get()) && !extremeValue.compareAndSet(current, value)) {
+        }
+    }
+
+    /**
+     * @return The extreme value of the current interval, without resetting it.
+     */
+    @Override
+    public Long getValue() {
+        return extremeValue.get();
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    @Override
+    public void writeTo(final FieldSink sink) {
+        sink.putLong(getName(), extremeValue.getAndSet(latestValue.get()));
+    }
+
+    @Override
+    public void peekTo(final FieldSink sink) {
+        sink.putLong(getName(), extremeValue.get());
+    }
+}
@@ -0,0 +1,40 @@
+package net.monofraps.influxmetrics.fields;
+
+/**
+ * Tracks the last committed value of a cumulative long value and computes deltas against it.
+ * Collecting, committing and rolling back is expected to happen on the reporter thread.
+ */
+class LongDelta {
+    private long committed = 0;
+    private long pending = 0;
+    private boolean hasPending = false;
+
+    /**
+     * @param current The current cumulative value.
+     * @return The difference between `current` and the last committed value.
+     */
+    synchronized long collect(final long current) {
+        pending = current;
+        hasPending = true;
+        return current - committed;
+    }
+
+    /**
+     * @param current The current cumulative value.
+     * @return The difference between `current` and the last committed value, without marking `current` as pending.
+     */
+    synchronized long peek(final long current) {
+        return current - committed;
+    }
+
+    synchronized void commit() {
+        if (hasPending) {
+            committed = pending;
+            hasPending = false;
+        }
+    }
+
+    synchronized void rollback() {
+        hasPending = false;
+    }
+}
@@ -0,0 +1,22 @@
+package net.monofraps.influxmetrics.fields;
+
+import java.util.function.LongSupplier;
+
+public class LongGauge extends AbstractMeasurementField implements ILongMeasurementField {
+    private final LongSupplier supplier;
+
+    public LongGauge(String name, LongSupplier supplier) {
+        super(name);
+        this.supplier = supplier;
+    }
+
+    @Override
+    public long getLongValue() {
+        return supplier.getAsLong();
+    }
+
+    @Override
+    public Long getValue() {
+        return supplier.getAsLong();
+    }
+}
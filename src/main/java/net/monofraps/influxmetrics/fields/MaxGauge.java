@@ -0,0 +1,19 @@
+package net.monofraps.influxmetrics.fields;
+
+/**
+ * Reports the highest value recorded during each reporting interval, e.g. the peak queue depth.
+ */
+public class MaxGauge extends IntervalExtremeGauge {
+    public MaxGauge(final String name) {
+        this(name, 0);
+    }
+
+    public MaxGauge(final String name, final long initialValue) {
+        super(name, initialValue);
+    }
+
+    @Override
+    protected boolean isMoreExtreme(final long candidate, final long current) {
+        return candidate > current;
+    }
+}
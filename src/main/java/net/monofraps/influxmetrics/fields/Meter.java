@@ -0,0 +1,93 @@
+package net.monofraps.influxmetrics.fields;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the rate of events as events per second.
+ * <p>
+ * Marking events is lock-free and only updates striped counters. The moving averages are advanced lazily in fixed
+ * ticks whenever the meter is read, which usually happens on the reporter thread.
+ * <p>
+ * Expands into the fields `name`_count, _mean_rate, _m1_rate, _m5_rate and _m15_rate.
+ */
+public class Meter extends AbstractMeasurementField implements ICompositeMeasurementField {
+    private static final long TICK_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder uncounted = new LongAdder();
+    private final ExponentiallyWeightedMovingAverage m1Rate = new ExponentiallyWeightedMovingAverage(1, TICK_INTERVAL);
+    private final ExponentiallyWeightedMovingAverage m5Rate = new ExponentiallyWeightedMovingAverage(5, TICK_INTERVAL);
+    private final ExponentiallyWeightedMovingAverage m15Rate = new ExponentiallyWeightedMovingAverage(15, TICK_INTERVAL);
+    private final long startTime;
+    private final AtomicLong lastTick;
+    private final List<String> fieldNames;
+
+    public Meter(final String name) {
+        super(name);
+        this.startTime = System.nanoTime();
+        this.lastTick = new AtomicLong(startTime);
+        this.fieldNames = ImmutableList.of(name + "_count", name + "_mean_rate", name + "_m1_rate", name + "_m5_rate", name + "_m15_rate");
+    }
+
+    public void mark() {
+        mark(1);
+    }
+
+    public void mark(final long n) {
+        count.add(n);
+        uncounted.add(n);
+    }
+
+    /**
+     * @return The total number of marked events.
+     */
+    @Override
+    public Long getValue() {
+        return count.sum();
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    @Override
+    public void writeTo(final FieldSink sink) {
+        tickIfNecessary();
+
+        final long currentCount = count.sum();
+        final long elapsed = System.nanoTime() - startTime;
+
+        sink.putLong(fieldNames.get(0), currentCount);
+        sink.putDouble(fieldNames.get(1), elapsed > 0 ? currentCount * (double) TimeUnit.SECONDS.toNanos(1) / elapsed : 0.0);
+        sink.putDouble(fieldNames.get(2), m1Rate.getRate(TimeUnit.SECONDS));
+        sink.putDouble(fieldNames.get(3), m5Rate.getRate(TimeUnit.SECONDS));
+        sink.putDouble(fieldNames.get(4), m15Rate.getRate(TimeUnit.SECONDS));
+    }
+
+    private void tickIfNecessary() {
+        final long oldTick = lastTick.get();
+        final long newTick = System.nanoTime();
+        final long age = newTick - oldTick;
+        if (age < TICK_INTERVAL) {
+            return;
+        }
+
+        final long newIntervalStartTick = newTick - age % TICK_INTERVAL;
+        if (lastTick.compareAndSet(oldTick, newIntervalStartTick)) {
+            final long requiredTicks = age / TICK_INTERVAL;
+            for (long i = 0; i < requiredTicks; i++) {
+                // all events since the last tick are attributed to the first missed tick
+                final long events = uncounted.sumThenReset();
+                m1Rate.tick(events);
+                m5Rate.tick(events);
+                m15Rate.tick(events);
+            }
+        }
+    }
+}
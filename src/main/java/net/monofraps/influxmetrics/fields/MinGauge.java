@@ -0,0 +1,19 @@
+package net.monofraps.influxmetrics.fields;
+
+/**
+ * Reports the lowest value recorded during each reporting interval, e.g. the lowest number of idle workers.
+ */
+public class MinGauge extends IntervalExtremeGauge {
+    public MinGauge(final String name) {
+        this(name, 0);
+    }
+
+    public MinGauge(final String name, final long initialValue) {
+        super(name, initialValue);
+    }
+
+    @Override
+    protected boolean isMoreExtreme(final long candidate, final long current) {
+        return candidate < current;
+    }
+}
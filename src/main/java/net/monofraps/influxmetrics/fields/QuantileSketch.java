@@ -0,0 +1,321 @@
+package net.monofraps.influxmetrics.fields;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A mergeable quantile sketch in the style of DDSketch.
+ * <p>
+ * Values are counted in logarithmic bins whose width guarantees a relative error of at most `relativeAccuracy` for any
+ * quantile. Bins are identified by an absolute index, so the states of sketches with the same relative accuracy can be
+ * merged without losing accuracy, e.g. to compute fleet-wide quantiles from the states reported by each node.
+ * <p>
+ * Memory is bounded by `maxBins` counters. They cover the values from `highestTrackableValue` downwards; smaller values
+ * are counted in the lowest bin and larger values in the highest bin. Values less than or equal to zero are counted
+ * separately as zeros. Recording is lock-free and does not allocate.
+ * <p>
+ * Expands into the fields `name`_count and `name`_sketch, the Base64 encoded state of the sketch (see
+ * {@link State#decode(String)}). The sketch is reset on every report.
+ */
+public class QuantileSketch extends AbstractMeasurementField implements ICompositeMeasurementField {
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BINS = 2048;
+    public static final double DEFAULT_HIGHEST_TRACKABLE_VALUE = 1e15;
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+    private final int maxIndex;
+    private final int minIndex;
+    private final AtomicLongArray counts;
+    private final AtomicLong zeroCount = new AtomicLong(0);
+    private final List<String> fieldNames;
+
+    public QuantileSketch(final String name) {
+        this(name, DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BINS, DEFAULT_HIGHEST_TRACKABLE_VALUE);
+    }
+
+    /**
+     * @param name                  The field name prefix.
+     * @param relativeAccuracy      The relative accuracy of quantiles, between 0 and 1 (exclusive).
+     * @param maxBins               The number of bins, i.e. the memory bound of the sketch.
+     * @param highestTrackableValue The highest value to track accurately.
+     */
+    public QuantileSketch(final String name, final double relativeAccuracy, final int maxBins, final double highestTrackableValue) {
+        super(name);
+        Preconditions.checkArgument(relativeAccuracy > 0 && relativeAccuracy < 1, "relativeAccuracy must be between 0 and 1");
+        Preconditions.checkArgument(maxBins > 0, "maxBins must be positive");
+        Preconditions.checkArgument(highestTrackableValue > 0, "highestTrackableValue must be positive");
+
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = logGamma(relativeAccuracy);
+        this.maxIndex = index(highestTrackableValue, logGamma);
+        this.minIndex = maxIndex - maxBins + 1;
+        this.counts = new AtomicLongArray(maxBins);
+        this.fieldNames = ImmutableList.of(name + "_count", name + "_sketch");
+    }
+
+    public void record(final double value) {
+        if (value <= 0 || Double.isNaN(value)) {
+            zeroCount.incrementAndGet();
+            return;
+        }
+
+        final int index = Math.max(minIndex, Math.min(maxIndex, index(value, logGamma)));
+        counts.incrementAndGet(index - minIndex);
+    }
+
+    /**
+     * Takes a copy of the current state and resets the sketch.
+     *
+     * @return The sketch's state.
+     */
+    public State getStateAndReset() {
+        return getState(true);
+    }
+
+    /**
+     * Takes a copy of the current state without resetting the sketch.
+     *
+     * @return The sketch's state.
+     */
+    public State getState() {
+        return getState(false);
+    }
+
+    private State getState(final boolean reset) {
+        final TreeMap<Integer, Long> bins = new TreeMap<>();
+        for (int i = 0; i < counts.length(); i++) {
+            final long count = reset ? counts.getAndSet(i, 0) : counts.get(i);
+            if (count != 0) {
+                bins.put(minIndex + i, count);
+            }
+        }
+
+        return new State(relativeAccuracy, reset ? zeroCount.getAndSet(0) : zeroCount.get(), bins);
+    }
+
+    /**
+     * @return The number of values recorded since the last report.
+     */
+    @Override
+    public Long getValue() {
+        long count = zeroCount.get();
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+
+        return count;
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    @Override
+    public void writeTo(final FieldSink sink) {
+        writeTo(getStateAndReset(), sink);
+    }
+
+    @Override
+    public void peekTo(final FieldSink sink) {
+        writeTo(getState(), sink);
+    }
+
+    private void writeTo(final State state, final FieldSink sink) {
+        sink.putLong(fieldNames.get(0), state.getCount());
+        sink.put(fieldNames.get(1), state.encode());
+    }
+
+    /**
+     * Decodes and merges the given encoded sketch states.
+     *
+     * @param encodedStates Sketch states as reported in the `name`_sketch field.
+     * @return The merged state.
+     * @throws IllegalArgumentException If a state cannot be decoded or the states' relative accuracies differ.
+     */
+    public static State merge(final Collection<String> encodedStates) {
+        Preconditions.checkArgument(!encodedStates.isEmpty(), "Need at least one state to merge");
+
+        State merged = null;
+        for (String encodedState : encodedStates) {
+            final State state = State.decode(encodedState);
+            merged = merged == null ? state : merged.merge(state);
+        }
+
+        return merged;
+    }
+
+    private static double logGamma(final double relativeAccuracy) {
+        return Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+    }
+
+    private static int index(final double value, final double logGamma) {
+        return (int) Math.ceil(Math.log(value) / logGamma);
+    }
+
+    /**
+     * An immutable, mergeable sketch state.
+     */
+    public static class State {
+        private static final byte ENCODING_VERSION = 1;
+
+        private final double relativeAccuracy;
+        private final double logGamma;
+        private final long zeroCount;
+        private final TreeMap<Integer, Long> bins;
+        private final long count;
+
+        State(final double relativeAccuracy, final long zeroCount, final TreeMap<Integer, Long> bins) {
+            this.relativeAccuracy = relativeAccuracy;
+            this.logGamma = logGamma(relativeAccuracy);
+            this.zeroCount = zeroCount;
+            this.bins = bins;
+
+            long totalCount = zeroCount;
+            for (long binCount : bins.values()) {
+                totalCount += binCount;
+            }
+            this.count = totalCount;
+        }
+
+        /**
+         * Decodes a state previously encoded with {@link #encode()}.
+         *
+         * @param encodedState The Base64 encoded state.
+         * @return The decoded state.
+         * @throws IllegalArgumentException If the state cannot be decoded.
+         */
+        public static State decode(final String encodedState) {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(encodedState)))) {
+                final byte version = in.readByte();
+                Preconditions.checkArgument(version == ENCODING_VERSION, "Unsupported sketch encoding version %s", version);
+
+                final double relativeAccuracy = in.readDouble();
+                final long zeroCount = readVarLong(in);
+                final long binCount = readVarLong(in);
+
+                final TreeMap<Integer, Long> bins = new TreeMap<>();
+                int index = 0;
+                for (long i = 0; i < binCount; i++) {
+                    final long delta = readVarLong(in);
+                    index += (int) ((delta >>> 1) ^ -(delta & 1));
+                    bins.put(index, readVarLong(in));
+                }
+
+                return new State(relativeAccuracy, zeroCount, bins);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Failed to decode sketch state", e);
+            }
+        }
+
+        /**
+         * Encodes this state as Base64 string. Bin indexes are delta encoded; indexes and counts are written as
+         * variable length integers.
+         *
+         * @return The encoded state.
+         */
+        public String encode() {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + bins.size() * 3);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeByte(ENCODING_VERSION);
+                out.writeDouble(relativeAccuracy);
+                writeVarLong(out, zeroCount);
+                writeVarLong(out, bins.size());
+
+                int previousIndex = 0;
+                for (Map.Entry<Integer, Long> bin : bins.entrySet()) {
+                    final long delta = bin.getKey() - previousIndex;
+                    writeVarLong(out, (delta << 1) ^ (delta >> 63));
+                    writeVarLong(out, bin.getValue());
+                    previousIndex = bin.getKey();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to encode sketch state", e);
+            }
+
+            return Base64.getEncoder().encodeToString(bytes.toByteArray());
+        }
+
+        /**
+         * @param other The state to merge with this state.
+         * @return A new state containing the values of both states.
+         * @throws IllegalArgumentException If the states' relative accuracies differ.
+         */
+        public State merge(final State other) {
+            Preconditions.checkArgument(Double.compare(relativeAccuracy, other.relativeAccuracy) == 0, "Cannot merge sketches with different relative accuracy");
+
+            final TreeMap<Integer, Long> mergedBins = new TreeMap<>(bins);
+            other.bins.forEach((index, binCount) -> mergedBins.merge(index, binCount, Long::sum));
+
+            return new State(relativeAccuracy, zeroCount + other.zeroCount, mergedBins);
+        }
+
+        public double getRelativeAccuracy() {
+            return relativeAccuracy;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @param percentile The percentile, between 0 and 100.
+         * @return The value at the given percentile or 0 if the state is empty.
+         */
+        public double getValueAtPercentile(final double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            final long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * count));
+            long seen = zeroCount;
+            if (seen >= rank) {
+                return 0;
+            }
+
+            for (Map.Entry<Integer, Long> bin : bins.entrySet()) {
+                seen += bin.getValue();
+                if (seen >= rank) {
+                    return 2 * Math.exp(bin.getKey() * logGamma) / (1 + Math.exp(logGamma));
+                }
+            }
+
+            return 2 * Math.exp(bins.lastKey() * logGamma) / (1 + Math.exp(logGamma));
+        }
+
+        private static void writeVarLong(final DataOutputStream out, long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+
+        private static long readVarLong(final DataInputStream in) throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final byte b = in.readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+
+            throw new IOException("Malformed variable length integer");
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package net.monofraps.influxmetrics.fields;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * A group of fields derived from a single sample.
+ * <p>
+ * The supplier is called once per collection and all fields of the group are derived from that sample, so the values
+ * of one data point are consistent with each other and an expensive source (e.g. an MX bean) is only queried once.
+ * <p>
+ * Fields added with {@link Builder#withDeltaField(String, ToLongFunction)} report the change of a cumulative value
+ * since the last committed report, see {@link DeltaField}.
+ *
+ * @param <S> The sample type.
+ */
+public class SnapshotFieldGroup<S> extends AbstractMeasurementField implements ICompositeMeasurementField, ITransactionalMeasurementField {
+    private final Supplier<S> supplier;
+    private final List<DerivedField<S>> fields;
+    private final List<String> fieldNames;
+
+    protected SnapshotFieldGroup(final String name, final Supplier<S> supplier, final List<DerivedField<S>> fields) {
+        super(name);
+        this.supplier = supplier;
+        this.fields = ImmutableList.copyOf(fields);
+        this.fieldNames = ImmutableList.copyOf(fields.stream().map(field -> field.name).collect(Collectors.toList()));
+    }
+
+    /**
+     * @param name     The group's name. Only used to identify the group, field names are not prefixed.
+     * @param supplier The sample supplier.
+     * @param <S>      The sample type.
+     * @return A builder for a field group sampling `supplier`.
+     */
+    public static <S> Builder<S> withSupplier(final String name, final Supplier<S> supplier) {
+        return new Builder<>(name, supplier);
+    }
+
+    /**
+     * @return A new sample.
+     */
+    @Override
+    public S getValue() {
+        return supplier.get();
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    @Override
+    public void writeTo(final FieldSink sink) {
+        final S sample = supplier.get();
+        for (DerivedField<S> field : fields) {
+            field.writeTo(sample, sink, false);
+        }
+    }
+
+    @Override
+    public void peekTo(final FieldSink sink) {
+        final S sample = supplier.get();
+        for (DerivedField<S> field : fields) {
+            field.writeTo(sample, sink, true);
+        }
+    }
+
+    @Override
+    public void commit() {
+        for (DerivedField<S> field : fields) {
+            if (field.delta != null) {
+                field.delta.commit();
+            }
+        }
+    }
+
+    @Override
+    public void rollback() {
+        for (DerivedField<S> field : fields) {
+            if (field.delta != null) {
+                field.delta.rollback();
+            }
+        }
+    }
+
+    private static class DerivedField<S> {
+        private final String name;
+        private final ToLongFunction<S> longFunction;
+        private final ToDoubleFunction<S> doubleFunction;
+        private final Function<S, ?> function;
+        private final LongDelta delta;
+
+        private DerivedField(final String name, final ToLongFunction<S> longFunction, final ToDoubleFunction<S> doubleFunction, final Function<S, ?> function, final LongDelta delta) {
+            this.name = name;
+            this.longFunction = longFunction;
+            this.doubleFunction = doubleFunction;
+            this.function = function;
+            this.delta = delta;
+        }
+
+        /**
+         * @param peek Whether to report the delta without marking it as reported.
+         */
+        private void writeTo(final S sample, final FieldSink sink, final boolean peek) {
+            if (delta != null) {
+                final long current = longFunction.applyAsLong(sample);
+                sink.putLong(name, peek ? delta.peek(current) : delta.collect(current));
+            } else if (longFunction != null) {
+                sink.putLong(name, longFunction.applyAsLong(sample));
+            } else if (doubleFunction != null) {
+                sink.putDouble(name, doubleFunction.applyAsDouble(sample));
+            } else {
+                sink.put(name, function.apply(sample));
+            }
+        }
+    }
+
+    public static class Builder<S> {
+        private final String name;
+        private final Supplier<S> supplier;
+        private final List<DerivedField<S>> fields = new ArrayList<>();
+
+        public Builder(final String name, final Supplier<S> supplier) {
+            this.name = name;
+            this.supplier = supplier;
+        }
+
+        public Builder<S> withLongField(final String fieldName, final ToLongFunction<S> function) {
+            fields.add(new DerivedField<>(fieldName, function, null, null, null));
+            return this;
+        }
+
+        public Builder<S> withDoubleField(final String fieldName, final ToDoubleFunction<S> function) {
+            fields.add(new DerivedField<>(fieldName, null, function, null, null));
+            return this;
+        }
+
+        public Builder<S> withField(final String fieldName, final Function<S, ?> function) {
+            fields.add(new DerivedField<>(fieldName, null, null, function, null));
+            return this;
+        }
+
+        /**
+         * Adds a field reporting the change of a cumulative long value since the last committed report.
+         */
+        public Builder<S> withDeltaField(final String fieldName, final ToLongFunction<S> function) {
+            fields.add(new DerivedField<>(fieldName, function, null, null, new LongDelta()));
+            return this;
+        }
+
+        public SnapshotFieldGroup<S> build() {
+            return new SnapshotFieldGroup<>(name, supplier, fields);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package net.monofraps.influxmetrics.fields;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter for heavily contended code paths.
+ * <p>
+ * Unlike {@link Counter}, which funnels every update through a single AtomicLong, updates are spread over a set of
+ * cells that grows with contention. Reading the value sums up all cells, so reads are more expensive than updates and
+ * are not an atomic snapshot while updates are in flight.
+ */
+public class StripedCounter extends AbstractMeasurementField implements ICumulativeMeasurementField {
+    private final LongAdder currentValue = new LongAdder();
+
+    public StripedCounter(final String name) {
+        super(name);
+    }
+
+    public void inc() {
+        currentValue.increment();
+    }
+
+    public void inc(final long n) {
+        currentValue.add(n);
+    }
+
+    public void dec() {
+        currentValue.decrement();
+    }
+
+    public void dec(final long n) {
+        currentValue.add(-n);
+    }
+
+    public void add(final long n) {
+        currentValue.add(n);
+    }
+
+    /**
+     * Resets the counter to zero. Updates racing with the reset may or may not be retained.
+     */
+    public void reset() {
+        currentValue.reset();
+    }
+
+    @Override
+    public long getLongValue() {
+        return currentValue.sum();
+    }
+
+    @Override
+    public Long getValue() {
+        return currentValue.sum();
+    }
+}
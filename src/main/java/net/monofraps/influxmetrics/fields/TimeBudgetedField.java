@@ -0,0 +1,210 @@
+package net.monofraps.influxmetrics.fields;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads a field which may be slow to read, e.g. a {@link JmxAttributeGauge} of a remote MBean or a {@link Gauge} backed
+ * by a lock, on a separate thread and waits at most a given time budget for the value, so that a single slow field does
+ * not stall the report of its whole registry.
+ * <p>
+ * If a read does not complete within the budget, the last known value of the field is reported, or no value if the field
+ * was never read successfully. The field `name`_stale tells whether the reported value was read during the current
+ * collection. A field is not read again while its previous read is still running.
+ * <p>
+ * A field which times out `maxTimeouts` times in a row is considered chronically slow and moved to background refresh:
+ * collecting it starts a read without waiting for it and reports the last known value. Once `maxTimeouts` background
+ * reads in a row completed within the budget, the field is waited for again.
+ * <p>
+ * Waiting for a read is a {@link ForkJoinPool.ManagedBlocker}, so that a registry snapshot collected on a
+ * {@link ForkJoinPool} (by default the common pool) compensates for the blocked worker instead of running short of
+ * workers.
+ */
+public class TimeBudgetedField extends AbstractMeasurementField implements ICompositeMeasurementField {
+    public static final int DEFAULT_MAX_TIMEOUTS = 3;
+    private static final Logger logger = LoggerFactory.getLogger(TimeBudgetedField.class);
+    private static final Executor DEFAULT_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("InfluxMetricsFieldReader-%d").build());
+
+    private final IMeasurementField field;
+    private final long budgetNanos;
+    private final int maxTimeouts;
+    private final Executor executor;
+    private final String staleFieldName;
+    private final List<String> fieldNames;
+    private final AtomicInteger fastBackgroundReads = new AtomicInteger();
+
+    private volatile Object lastValue;
+    private volatile boolean background = false;
+    private volatile boolean lastCollectionFresh = false;
+    private CompletableFuture<Object> pendingRead;
+    private int consecutiveTimeouts = 0;
+
+    public TimeBudgetedField(final IMeasurementField field, final long budget, final TimeUnit unit) {
+        this(field, budget, unit, DEFAULT_MAX_TIMEOUTS, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * @param maxTimeouts The number of timeouts in a row after which the field is refreshed in the background.
+     * @param executor    Reads the field. Should not queue reads, since a queued read counts against the budget.
+     */
+    public TimeBudgetedField(final IMeasurementField field, final long budget, final TimeUnit unit, final int maxTimeouts, final Executor executor) {
+        super(field.getName());
+        Preconditions.checkArgument(budget > 0, "budget must be positive");
+        Preconditions.checkArgument(maxTimeouts > 0, "maxTimeouts must be positive");
+
+        this.field = field;
+        this.budgetNanos = unit.toNanos(budget);
+        this.maxTimeouts = maxTimeouts;
+        this.executor = executor;
+        this.staleFieldName = field.getName() + "_stale";
+        this.fieldNames = ImmutableList.of(field.getName(), staleFieldName);
+    }
+
+    /**
+     * @return The last known value, without reading the field.
+     */
+    @Override
+    public Object getValue() {
+        return lastValue;
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    @Override
+    public void writeTo(final FieldSink sink) {
+        final boolean fresh = collect();
+        lastCollectionFresh = fresh;
+        final Object value = lastValue;
+        if (value != null) {
+            sink.put(getName(), value);
+        }
+        sink.put(staleFieldName, !fresh);
+    }
+
+    /**
+     * Writes the last known value without reading the field, along with whether it was read during the last collection.
+     */
+    @Override
+    public void peekTo(final FieldSink sink) {
+        sink.put(getName(), lastValue);
+        sink.put(staleFieldName, !lastCollectionFresh);
+    }
+
+    /**
+     * @return Whether the field is chronically slow and refreshed in the background.
+     */
+    public boolean isRefreshedInBackground() {
+        return background;
+    }
+
+    /**
+     * Reads the field unless the previous read is still running and waits for the read if the field is not refreshed in
+     * the background.
+     *
+     * @return Whether the field was read within the budget.
+     */
+    private synchronized boolean collect() {
+        if (pendingRead != null && !pendingRead.isDone()) {
+            if (!background) {
+                onTimeout();
+            }
+            return false;
+        }
+
+        pendingRead = CompletableFuture.supplyAsync(this::read, executor);
+        if (background) {
+            return false;
+        }
+
+        try {
+            ForkJoinPool.managedBlock(new BudgetedWait(pendingRead, budgetNanos));
+            if (!pendingRead.isDone()) {
+                onTimeout();
+                return false;
+            }
+            pendingRead.get();
+            consecutiveTimeouts = 0;
+            return true;
+        } catch (ExecutionException e) {
+            logger.error("Failed to read field {}", getName(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Waits for a read until it completes or the budget is used up.
+     */
+    private static class BudgetedWait implements ForkJoinPool.ManagedBlocker {
+        private final CompletableFuture<Object> read;
+        private final long deadlineNanos;
+
+        private BudgetedWait(final CompletableFuture<Object> read, final long budgetNanos) {
+            this.read = read;
+            this.deadlineNanos = System.nanoTime() + budgetNanos;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            try {
+                read.get(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                // told apart by the caller
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return read.isDone() || deadlineNanos - System.nanoTime() <= 0;
+        }
+    }
+
+    private void onTimeout() {
+        if (++consecutiveTimeouts >= maxTimeouts) {
+            logger.warn("Field {} exceeded its collection budget of {} ms {} times in a row and is refreshed in the background from now on", getName(), TimeUnit.NANOSECONDS.toMillis(budgetNanos), consecutiveTimeouts);
+            consecutiveTimeouts = 0;
+            fastBackgroundReads.set(0);
+            background = true;
+        }
+    }
+
+    /**
+     * Runs on the executor; must not lock this field, since the collecting thread waits for it while holding the lock.
+     */
+    private Object read() {
+        final long start = System.nanoTime();
+        final Object value = field.getValue();
+        final long elapsedNanos = System.nanoTime() - start;
+
+        if (value != null) {
+            lastValue = value;
+        }
+        if (background) {
+            if (elapsedNanos > budgetNanos) {
+                fastBackgroundReads.set(0);
+            } else if (fastBackgroundReads.incrementAndGet() >= maxTimeouts) {
+                logger.info("Field {} is read within its collection budget again", getName());
+                background = false;
+            }
+        }
+        return value;
+    }
+}
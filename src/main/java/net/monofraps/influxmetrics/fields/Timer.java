@@ -0,0 +1,130 @@
+package net.monofraps.influxmetrics.fields;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the duration of operations in nanoseconds and the number of operations per second.
+ * <p>
+ * Durations are recorded into a {@link Histogram} which is reset on every report. Timing through {@link #time()} reuses
+ * one context object per thread, so timing does not allocate once a thread has used the timer.
+ * <p>
+ * Expands into the histogram fields `name`_count, _min, _max, _mean, _p50, _p90, _p99, _p999 (all in nanoseconds
+ * except count) and `name`_rate, the number of operations per second since the last report.
+ */
+public class Timer extends AbstractMeasurementField implements ICompositeMeasurementField {
+    private final Histogram histogram;
+    private final AtomicLong lastReportTime = new AtomicLong(System.nanoTime());
+    private final ThreadLocal<Context> contexts = ThreadLocal.withInitial(Context::new);
+    private final List<String> fieldNames;
+    private final String rateFieldName;
+
+    public Timer(final String name) {
+        this(name, Long.MAX_VALUE, Histogram.DEFAULT_SIGNIFICANT_BITS);
+    }
+
+    /**
+     * @param name                     The field name prefix.
+     * @param highestTrackableDuration The highest duration in nanoseconds to track exactly.
+     * @param significantBits          Number of significant bits to keep per duration, see {@link Histogram}.
+     */
+    public Timer(final String name, final long highestTrackableDuration, final int significantBits) {
+        super(name);
+        this.histogram = new Histogram(name, highestTrackableDuration, significantBits, true);
+        this.rateFieldName = name + "_rate";
+        this.fieldNames = ImmutableList.<String>builder().addAll(histogram.getFieldNames()).add(rateFieldName).build();
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param duration The duration.
+     * @param unit     The duration's unit.
+     */
+    public void update(final long duration, final TimeUnit unit) {
+        histogram.record(unit.toNanos(duration));
+    }
+
+    public void time(final Runnable runnable) {
+        final long startTime = System.nanoTime();
+        try {
+            runnable.run();
+        } finally {
+            histogram.record(System.nanoTime() - startTime);
+        }
+    }
+
+    public <T> T time(final Callable<T> callable) throws Exception {
+        final long startTime = System.nanoTime();
+        try {
+            return callable.call();
+        } finally {
+            histogram.record(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Starts timing an operation. The duration is recorded when the returned context is closed.
+     * <p>
+     * The context is owned by the calling thread and reused by subsequent calls, so it must be closed on the same thread
+     * before the thread starts timing another operation on this timer.
+     *
+     * @return The calling thread's timer context.
+     */
+    public Context time() {
+        final Context context = contexts.get();
+        context.startTime = System.nanoTime();
+        return context;
+    }
+
+    /**
+     * @return The number of operations recorded since the last report.
+     */
+    @Override
+    public Long getValue() {
+        return histogram.getValue();
+    }
+
+    @Override
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    @Override
+    public void writeTo(final FieldSink sink) {
+        final Histogram.Snapshot snapshot = histogram.getSnapshotAndReset();
+        final long now = System.nanoTime();
+        final long elapsed = now - lastReportTime.getAndSet(now);
+
+        snapshot.writeTo(histogram.getFieldNames(), sink);
+        sink.putDouble(rateFieldName, elapsed > 0 ? snapshot.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed : 0.0);
+    }
+
+    @Override
+    public void peekTo(final FieldSink sink) {
+        final Histogram.Snapshot snapshot = histogram.getSnapshot();
+        final long elapsed = System.nanoTime() - lastReportTime.get();
+
+        snapshot.writeTo(histogram.getFieldNames(), sink);
+        sink.putDouble(rateFieldName, elapsed > 0 ? snapshot.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed : 0.0);
+    }
+
+    /**
+     * A reusable timing scope for try-with-resources blocks.
+     */
+    public final class Context implements AutoCloseable {
+        private long startTime;
+
+        private Context() {
+        }
+
+        @Override
+        public void close() {
+            histogram.record(System.nanoTime() - startTime);
+        }
+    }
+}
@@ -8,6 +8,8 @@ import org.influxdb.InfluxDB;
 import org.influxdb.InfluxDBFactory;
 import org.influxdb.dto.BatchPoints;
 import org.influxdb.dto.InfluxPoint;
+import org.influxdb.dto.LineProtocol;
+import org.influxdb.dto.LineProtocolPoint;
 import org.influxdb.dto.Point;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +25,8 @@ public class InfluxdbHttpReporter extends ScheduledReporter {
     private final Logger logger = LoggerFactory.getLogger(InfluxdbHttpReporter.class);
     private final Map<InfluxSeriesRegistry, String> registryToDatabaseMapping;
     private final InfluxSeriesRegistry reporterStatsRegistry;
+    private final Map<String, SeriesHandle<EventSeries<MetricsRegistryReportedEvent>>> registryReportedSeries = new HashMap<>();
+    private final SeriesHandle<EventSeries<MetricsReportedEvent>> allRegistriesCommittedSeries;
     private final AtomicInteger currentPointCount = new AtomicInteger(0);
     private final AtomicInteger currentBatchCount = new AtomicInteger(0);
     private InfluxDB influxDB;
@@ -35,6 +39,14 @@ public class InfluxdbHttpReporter extends ScheduledReporter {
         super(registries.keySet(), "InfluxDbHttpReporter");
         this.registryToDatabaseMapping = registries;
         this.reporterStatsRegistry = reporterStatsRegistry;
+        if (reporterStatsRegistry != null) {
+            for (String database : registries.values()) {
+                registryReportedSeries.put(database, reporterStatsRegistry.bindEventSeries("reporter_registry_committed", ImmutableList.of(new MetricTag("targetDb", database)), MetricsRegistryReportedEvent.class));
+            }
+            this.allRegistriesCommittedSeries = reporterStatsRegistry.bindEventSeries("reporter_committed", Collections.emptyList(), MetricsReportedEvent.class);
+        } else {
+            this.allRegistriesCommittedSeries = null;
+        }
 
         logger.debug("Connecting to InfluxDB at '{}' as user '{}'", httpConnection, username);
         influxDB = InfluxDBFactory.connect(httpConnection, username, password);
@@ -68,11 +80,22 @@ public class InfluxdbHttpReporter extends ScheduledReporter {
 
         BatchPoints batchPoints = BatchPoints.database(database).retentionPolicy(retentionPolicy).build();
 
+        // event series are drained straight to line protocol, all other series are collected against one timestamp
+        final RegistrySnapshot snapshot = registry.snapshot(series -> !(series instanceof EventSeries));
+        final List<InfluxSeries> eventSeries = new ArrayList<>();
         for (final InfluxSeries series : registry.getSeries()) {
-            for (DataPoint dataPoint : series.getValueSets()) {
+            if (series instanceof EventSeries) {
+                writeEventSeries((EventSeries<?>) series, snapshot.getTimestamp(), batchPoints);
+                eventSeries.add(series);
+            }
+        }
+
+        for (final RegistrySnapshot.SeriesValues series : snapshot.getSeries()) {
+            for (DataPoint dataPoint : series.getDataPoints()) {
                 final InfluxPoint.InfluxPointBuilder pointBuilder = InfluxPoint.forMeasurement(series.getMeasurementName()).time(dataPoint.getTime(), dataPoint.getPrecision()).tag(series.getTags());
 
-                pointBuilder.fields(dataPoint.getFields());
+                pointBuilder.fields(dataPoint.getFieldValues());
+                pointBuilder.tag(dataPoint.getTags());
                 pointBuilder.tag(tags);
 
                 final Point point = pointBuilder.build();
@@ -81,7 +104,15 @@ public class InfluxdbHttpReporter extends ScheduledReporter {
             }
         }
 
-        influxDB.write(batchPoints);
+        try {
+            influxDB.write(batchPoints);
+        } catch (RuntimeException e) {
+            snapshot.rollback();
+            eventSeries.forEach(InfluxSeries::rollbackValueSets);
+            throw e;
+        }
+        snapshot.commit();
+        eventSeries.forEach(InfluxSeries::commitValueSets);
         timer.stop();
 
         currentBatchCount.incrementAndGet();
@@ -90,31 +121,38 @@ public class InfluxdbHttpReporter extends ScheduledReporter {
         onRegistryReported(database, timer.elapsed(TimeUnit.MILLISECONDS), batchPoints.getPoints().size());
     }
 
+    /**
+     * @param timestamp The time rollups are stamped with, that of the snapshot of the other series.
+     */
+    private void writeEventSeries(final EventSeries<?> series, final long timestamp, final BatchPoints batchPoints) {
+        // reporter tags take precedence over series tags, like for points built by InfluxPoint
+        final Map<String, String> pointTags = new HashMap<>(series.getTags());
+        pointTags.putAll(tags);
+        final String measurementAndTags = LineProtocol.appendMeasurementAndTags(new StringBuilder(), series.getMeasurementName(), pointTags).toString();
+
+        final List<String> lines = new ArrayList<>();
+        // per-event tags of the same names as reporter tags are left out, so that no line repeats a tag
+        series.drainLineProtocol(measurementAndTags, tags.keySet(), timestamp, lines);
+        for (String line : lines) {
+            batchPoints.point(new LineProtocolPoint(line));
+        }
+    }
+
     private void onRegistryReported(String database, long reportTime, int pointCount) {
         if (reporterStatsRegistry == null) {
             return;
         }
 
-        getRegistryReportedSeries(database).commitEvent(new MetricsRegistryReportedEvent(reportTime, pointCount));
-    }
-
-    private EventSeries<MetricsRegistryReportedEvent> getRegistryReportedSeries(final String targetDatabaseName) {
-        Preconditions.checkState(reporterStatsRegistry != null);
-        return reporterStatsRegistry.eventSeries("reporter_registry_committed", ImmutableList.of(new MetricTag("targetDb", targetDatabaseName)), MetricsRegistryReportedEvent.class);
+        registryReportedSeries.get(database).get().commitEvent(new MetricsRegistryReportedEvent(reportTime, pointCount));
     }
 
     @Override
     protected void postReport(long reportTime) {
         if (reporterStatsRegistry != null) {
-            getAllRegistriesCommittedEventSeries().commitEvent(new MetricsReportedEvent(currentBatchCount.getAndSet(0), currentPointCount.getAndSet(0), reportTime));
+            allRegistriesCommittedSeries.get().commitEvent(new MetricsReportedEvent(currentBatchCount.getAndSet(0), currentPointCount.getAndSet(0), reportTime));
         }
     }
 
-    private EventSeries<MetricsReportedEvent> getAllRegistriesCommittedEventSeries() {
-        Preconditions.checkState(reporterStatsRegistry != null);
-        return reporterStatsRegistry.eventSeries("reporter_committed", Collections.emptyList(), MetricsReportedEvent.class);
-    }
-
     public static class Builder {
         private final Map<InfluxSeriesRegistry, String> registries = new HashMap<>(5);
         private String httpConnection = "http://localhost:8086";
@@ -9,10 +9,12 @@ import java.util.Collection;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
- * Registers a dynamic MBean for each time series in a series registry.
+ * Registers a dynamic MBean for each time series in a series registry. Event series and other series whose values are
+ * taken when collected are not registered.
  * @author monofraps
  */
 public class JmxReporter implements RegistryEventListener {
@@ -50,7 +52,8 @@ public class JmxReporter implements RegistryEventListener {
 
     private void registerSeries(final InfluxSeries influxSeries) {
         try {
-            if(influxSeries instanceof EventSeries) {
+            // only time series can be read without affecting what is reported
+            if (!(influxSeries instanceof TimeSeries)) {
                 return;
             }
 
@@ -83,9 +86,14 @@ public class JmxReporter implements RegistryEventListener {
 
     private void unregisterSeries(InfluxSeries series) {
         try {
+            if (!(series instanceof TimeSeries)) {
+                return;
+            }
+
             final ObjectName objectName = createObjectName(series);
             if(!mBeanServer.isRegistered(objectName)) {
                 logger.info("Skipping un-registration of {} since the series is not registered with the MBean server", series.getMeasurementName());
+                return;
             }
 
             mBeanServer.unregisterMBean(objectName);
@@ -123,12 +131,7 @@ public class JmxReporter implements RegistryEventListener {
 
         @Override
         public Object getAttribute(String attribute) throws AttributeNotFoundException, MBeanException, ReflectionException {
-            final Collection<DataPoint> valueSets = timeSeries.getValueSets();
-            if (valueSets.isEmpty()) {
-                throw new RuntimeOperationsException(new RuntimeException("No datapoints available"));
-            }
-
-            return valueSets.iterator().next().getFields().get(attribute);
+            return getCurrentValues().get(attribute);
         }
 
         @Override
@@ -143,11 +146,24 @@ public class JmxReporter implements RegistryEventListener {
 
         @Override
         public MBeanInfo getMBeanInfo() {
-			final Collection<DataPoint> sampleValues = timeSeries.getValueSets();
-			final DataPoint sampleValue = sampleValues.iterator().next();
-
-			final List<MBeanAttributeInfo> mBeanAttributes = sampleValue.getFields().entrySet().stream().map(fieldEntry -> new MBeanAttributeInfo(fieldEntry.getKey(), fieldEntry.getValue().getClass().getCanonicalName(), "", true, false, false)).collect(Collectors.toCollection(LinkedList::new));
+			final List<MBeanAttributeInfo> mBeanAttributes = getCurrentValues().entrySet().stream().map(fieldEntry -> new MBeanAttributeInfo(fieldEntry.getKey(), (fieldEntry.getValue() != null ? fieldEntry.getValue() : "null").getClass().getCanonicalName(), "", true, false, false)).collect(Collectors.toCollection(LinkedList::new));
             return new MBeanInfo(InfluxSeriesMBean.class.getCanonicalName(), "", mBeanAttributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
         }
+
+        /**
+         * Time series are read without affecting reporting, so JMX clients do not reset interval fields or deltas.
+         */
+        private Map<String, Object> getCurrentValues() {
+            if (timeSeries instanceof TimeSeries) {
+                return ((TimeSeries) timeSeries).peekFieldValues();
+            }
+
+            final Collection<DataPoint> valueSets = timeSeries.getValueSets();
+            if (valueSets.isEmpty()) {
+                throw new RuntimeOperationsException(new RuntimeException("No datapoints available"));
+            }
+
+            return valueSets.iterator().next().getFields();
+        }
     }
 }
@@ -3,18 +3,16 @@ package net.monofraps.influxmetrics.jvm;
 import com.google.common.collect.ImmutableList;
 import net.monofraps.influxmetrics.InfluxSeriesRegistry;
 import net.monofraps.influxmetrics.MetricTag;
-import net.monofraps.influxmetrics.fields.IMeasurementField;
-import net.monofraps.influxmetrics.fields.JmxAttributeGauge;
+import net.monofraps.influxmetrics.fields.SnapshotFieldGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.Attribute;
 import javax.management.JMException;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 import java.lang.management.ManagementFactory;
-import java.nio.Buffer;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Creates jvm_buffer measurement series tagged with the buffer pool type with fields Count, MemoryUsed and TotalCapacity.
@@ -68,16 +66,34 @@ public class BufferPoolMetrics {
     private void registerSeriesForPool(final InfluxSeriesRegistry registry, final String pool) {
         try {
             final ObjectName poolBeanObjectName = new ObjectName("java.nio:type=BufferPool,name=" + pool);
-            final List<IMeasurementField> measurementFields = new ArrayList<>();
+            final SnapshotFieldGroup.Builder<long[]> fields = SnapshotFieldGroup.withSupplier(pool, () -> getAttributes(poolBeanObjectName));
             for (int i = 0; i < ATTRIBUTES.length; i++) {
-                final String attribute = ATTRIBUTES[i];
-                final String name = NAMES[i];
-
-                measurementFields.add(new JmxAttributeGauge(name, mBeanServer, poolBeanObjectName, attribute));
+                final int attributeIndex = i;
+                fields.withLongField(NAMES[i], sample -> sample[attributeIndex]);
             }
-            registry.timeSeries(measurementName, ImmutableList.of(new MetricTag("pool", pool)), measurementFields);
+            registry.pin(registry.timeSeries(measurementName, ImmutableList.of(new MetricTag("pool", pool)), ImmutableList.of(fields.build())));
         } catch (JMException ignored) {
             LOGGER.debug("Unable to load buffer pool MBeans, possibly running on Java 6");
         }
     }
+
+    /**
+     * Reads all attributes of a buffer pool bean with a single MBean server call.
+     * Attributes which cannot be read are reported as 0.
+     */
+    private long[] getAttributes(final ObjectName poolBeanObjectName) {
+        final long[] values = new long[ATTRIBUTES.length];
+        try {
+            for (Attribute attribute : mBeanServer.getAttributes(poolBeanObjectName, ATTRIBUTES).asList()) {
+                final int index = Arrays.asList(ATTRIBUTES).indexOf(attribute.getName());
+                if (index >= 0 && attribute.getValue() instanceof Number) {
+                    values[index] = ((Number) attribute.getValue()).longValue();
+                }
+            }
+        } catch (JMException e) {
+            LOGGER.error("Failed to get buffer pool attributes", e);
+        }
+
+        return values;
+    }
 }
@@ -3,7 +3,7 @@ package net.monofraps.influxmetrics.jvm;
 import com.google.common.collect.ImmutableList;
 import net.monofraps.influxmetrics.InfluxSeriesRegistry;
 import net.monofraps.influxmetrics.MetricTag;
-import net.monofraps.influxmetrics.fields.Gauge;
+import net.monofraps.influxmetrics.fields.SnapshotFieldGroup;
 
 import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
@@ -19,11 +19,14 @@ import java.util.regex.Pattern;
  * Fields:
  * count - number of collections occurred
  * time - total time spent for garbage collections
+ * <p>
+ * If created with `reportDeltas`, count and time are reported as the change since the last written report.
  */
 public class GarbageCollectorMetrics {
     private static final Pattern WHITESPACE = Pattern.compile("[\\s]+");
 
     private final String measurementName;
+    private final boolean reportDeltas;
 
     /**
      * Creates new measurement series for each garbage collector in ManagementFactory.getGarbageCollectorMXBeans using the measurement name 'jvm_gc'.
@@ -38,7 +41,18 @@ public class GarbageCollectorMetrics {
      * @param measurementName The measurement name to use.
      */
     public GarbageCollectorMetrics(String measurementName) {
+        this(measurementName, false);
+    }
+
+    /**
+     * Creates new measurement series for each garbage collector in ManagementFactory.getGarbageCollectorMXBeans using the given measurement name.
+     *
+     * @param measurementName The measurement name to use.
+     * @param reportDeltas    Whether to report per-interval deltas instead of totals since JVM start.
+     */
+    public GarbageCollectorMetrics(String measurementName, boolean reportDeltas) {
         this.measurementName = measurementName;
+        this.reportDeltas = reportDeltas;
     }
 
 
@@ -47,8 +61,23 @@ public class GarbageCollectorMetrics {
 
         for (final GarbageCollectorMXBean gc : garbageCollectors) {
             final String name = WHITESPACE.matcher(gc.getName()).replaceAll("-");
-            registry.timeSeries(measurementName,
-                    ImmutableList.of(new MetricTag("collectorName", name)), ImmutableList.of(new Gauge<>("count", gc::getCollectionCount), new Gauge<>("collectionTime", gc::getCollectionTime)));
+            final SnapshotFieldGroup.Builder<CollectorSample> fields = SnapshotFieldGroup.withSupplier("collector", () -> new CollectorSample(gc));
+            if (reportDeltas) {
+                fields.withDeltaField("count", sample -> sample.count).withDeltaField("collectionTime", sample -> sample.collectionTime);
+            } else {
+                fields.withLongField("count", sample -> sample.count).withLongField("collectionTime", sample -> sample.collectionTime);
+            }
+            registry.pin(registry.timeSeries(measurementName, ImmutableList.of(new MetricTag("collectorName", name)), ImmutableList.of(fields.build())));
 		}
     }
+
+    private static class CollectorSample {
+        private final long count;
+        private final long collectionTime;
+
+        private CollectorSample(final GarbageCollectorMXBean gc) {
+            this.count = gc.getCollectionCount();
+            this.collectionTime = gc.getCollectionTime();
+        }
+    }
 }
@@ -1,11 +1,9 @@
 package net.monofraps.influxmetrics.jvm;
 
-import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import net.monofraps.influxmetrics.InfluxSeriesRegistry;
 import net.monofraps.influxmetrics.MetricTag;
-import net.monofraps.influxmetrics.fields.Gauge;
-import net.monofraps.influxmetrics.fields.IMeasurementField;
+import net.monofraps.influxmetrics.fields.SnapshotFieldGroup;
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
@@ -14,6 +12,7 @@ import java.lang.management.MemoryUsage;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 /**
@@ -76,18 +75,16 @@ public class MemoryUsageMetrics {
     }
 
 	private void createSeries(InfluxSeriesRegistry registry, List<MetricTag> tags, Supplier<MemoryUsage> usageSupplier) {
-		List<IMeasurementField> fields = new ArrayList<>(5);
-		fields.add(new Gauge<>(INIT_FIELD_NAME, () -> usageSupplier.get().getInit()));
-		fields.add(new Gauge<>(USED_FIELD_NAME, () -> usageSupplier.get().getUsed()));
-		fields.add(new Gauge<>(MAX_FIELD_NAME, () -> usageSupplier.get().getMax()));
-		fields.add(new Gauge<>(COMMITTED_FIELD_NAME, () -> usageSupplier.get().getCommitted()));
-		fields.add(new Gauge<>(USAGE_FIELD_NAME, () -> {
-			final MemoryUsage memoryUsage = usageSupplier.get();
-			return memoryUsage.getUsed() / memoryUsage.getMax() == -1 ?
-					usageSupplier.get().getCommitted() / memoryUsage.getMax() :
-					memoryUsage.getUsed() / memoryUsage.getMax();
-		}));
+		final SnapshotFieldGroup<MemoryUsage> fields = SnapshotFieldGroup.withSupplier("memoryUsage", usageSupplier)
+				.withLongField(INIT_FIELD_NAME, MemoryUsage::getInit)
+				.withLongField(USED_FIELD_NAME, MemoryUsage::getUsed)
+				.withLongField(MAX_FIELD_NAME, MemoryUsage::getMax)
+				.withLongField(COMMITTED_FIELD_NAME, MemoryUsage::getCommitted)
+				.withLongField(USAGE_FIELD_NAME, memoryUsage -> memoryUsage.getUsed() / memoryUsage.getMax() == -1 ?
+						memoryUsage.getCommitted() / memoryUsage.getMax() :
+						memoryUsage.getUsed() / memoryUsage.getMax())
+				.build();
 
-		registry.timeSeries(measurementName, tags, fields);
+		registry.pin(registry.timeSeries(measurementName, tags, ImmutableList.of(fields)));
 	}
 }
@@ -2,8 +2,8 @@ package net.monofraps.influxmetrics.jvm;
 
 import com.google.common.collect.Lists;
 import net.monofraps.influxmetrics.InfluxSeriesRegistry;
-import net.monofraps.influxmetrics.fields.Gauge;
 import net.monofraps.influxmetrics.fields.IMeasurementField;
+import net.monofraps.influxmetrics.fields.LongGauge;
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
@@ -66,11 +66,11 @@ public class ThreadStateMetrics {
         final List<IMeasurementField> fields = new ArrayList<>();
 
         for (final Thread.State state : Thread.State.values()) {
-            fields.add(new Gauge<>(state.toString().toLowerCase(), () -> getThreadCount(state)));
+            fields.add(new LongGauge(state.toString().toLowerCase(), () -> getThreadCount(state)));
         }
 
-        fields.add(new Gauge<>("daemon", threads::getDaemonThreadCount));
-        fields.add(new Gauge<>("deadlock", () -> {
+        fields.add(new LongGauge("daemon", threads::getDaemonThreadCount));
+        fields.add(new LongGauge("deadlock", () -> {
             final long[] deadlockedThreads = threads.findDeadlockedThreads();
             if (deadlockedThreads != null) {
                 return deadlockedThreads.length;
@@ -79,7 +79,7 @@ public class ThreadStateMetrics {
             return 0;
         }));
 
-        registry.timeSeries(measurementName, Lists.newArrayList(), fields);
+        registry.pin(registry.timeSeries(measurementName, Lists.newArrayList(), fields));
     }
 
     private long getThreadCount(Thread.State state) {
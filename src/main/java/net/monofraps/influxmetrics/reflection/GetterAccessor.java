@@ -0,0 +1,227 @@
+package net.monofraps.influxmetrics.reflection;
+
+import net.monofraps.influxmetrics.fields.FieldSink;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Fast access to a getter's value, compiled once per getter.
+ * <p>
+ * Getters of public classes are bound to generated functional interface implementations via LambdaMetafactory, so
+ * calling them is as cheap as a direct call and int, long, float and double values are not boxed. Getters that cannot
+ * be bound that way are called through a method handle. Since the generated classes are defined in the class loader of
+ * this class, getters are only bound if their class and return type resolve to the same classes from that loader, which
+ * is not the case e.g. for event classes of an application loaded by a child of the library's loader.
+ */
+public abstract class GetterAccessor {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final ClassValue<Map<Method, GetterAccessor>> CACHE = new ClassValue<Map<Method, GetterAccessor>>() {
+        @Override
+        protected Map<Method, GetterAccessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    /**
+     * Returns the (cached) accessor for `getter`.
+     *
+     * @param getter A public method without parameters.
+     * @return The getter's accessor.
+     * @throws IllegalArgumentException If no accessor can be created for `getter`.
+     */
+    public static GetterAccessor forGetter(final Method getter) {
+        return CACHE.get(getter.getDeclaringClass()).computeIfAbsent(getter, GetterAccessor::create);
+    }
+
+    /**
+     * Reads the getter's value from `target`.
+     */
+    public abstract Object get(Object target);
+
+    /**
+     * Reads the getter's value from `target` as long. Does not box the value if the getter returns int or long.
+     *
+     * @throws ClassCastException If the getter does not return a number.
+     */
+    public long getLong(final Object target) {
+        return ((Number) get(target)).longValue();
+    }
+
+    /**
+     * Reads the getter's value from `target` as double. Does not box the value if the getter returns a primitive
+     * number.
+     *
+     * @throws ClassCastException If the getter does not return a number.
+     */
+    public double getDouble(final Object target) {
+        return ((Number) get(target)).doubleValue();
+    }
+
+    /**
+     * Reads the getter's value from `target` and writes it into `sink` as field `name`.
+     */
+    public abstract void writeTo(Object target, String name, FieldSink sink);
+
+    private static GetterAccessor create(final Method getter) {
+        final MethodHandle handle;
+        try {
+            getter.setAccessible(true);
+            handle = LOOKUP.unreflect(getter);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot access getter " + getter, e);
+        }
+
+        if (Modifier.isPublic(getter.getDeclaringClass().getModifiers()) && isVisible(getter.getDeclaringClass()) && isVisible(getter.getReturnType())) {
+            try {
+                return createGenerated(getter, handle);
+            } catch (Throwable ignored) {
+                // fall back to the method handle, e.g. if the class is not visible from the lookup class
+            }
+        }
+
+        return new MethodHandleAccessor(handle.asType(MethodType.methodType(Object.class, Object.class)));
+    }
+
+    /**
+     * @return Whether `type` resolves to the same class from the class loader that generated accessors are defined in.
+     */
+    private static boolean isVisible(final Class<?> type) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        try {
+            return Class.forName(type.getName(), false, GetterAccessor.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static GetterAccessor createGenerated(final Method getter, final MethodHandle handle) throws Throwable {
+        final Class<?> returnType = getter.getReturnType();
+        final MethodType instantiatedType = MethodType.methodType(returnType, getter.getDeclaringClass());
+
+        if (returnType == long.class || returnType == int.class) {
+            return new LongAccessor((ToLongFunction<Object>) generate(ToLongFunction.class, "applyAsLong", MethodType.methodType(long.class, Object.class), handle, instantiatedType.changeReturnType(long.class)));
+        }
+        if (returnType == double.class || returnType == float.class) {
+            return new DoubleAccessor((ToDoubleFunction<Object>) generate(ToDoubleFunction.class, "applyAsDouble", MethodType.methodType(double.class, Object.class), handle, instantiatedType.changeReturnType(double.class)));
+        }
+
+        return new ObjectAccessor((Function<Object, Object>) generate(Function.class, "apply", MethodType.methodType(Object.class, Object.class), handle, instantiatedType.wrap().changeParameterType(0, getter.getDeclaringClass())));
+    }
+
+    private static Object generate(final Class<?> functionalInterface, final String methodName, final MethodType samType, final MethodHandle handle, final MethodType instantiatedType) throws Throwable {
+        final CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, methodName, MethodType.methodType(functionalInterface), samType, handle, instantiatedType);
+        return callSite.getTarget().invoke();
+    }
+
+    private static class LongAccessor extends GetterAccessor {
+        private final ToLongFunction<Object> function;
+
+        private LongAccessor(final ToLongFunction<Object> function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object get(final Object target) {
+            return function.applyAsLong(target);
+        }
+
+        @Override
+        public long getLong(final Object target) {
+            return function.applyAsLong(target);
+        }
+
+        @Override
+        public double getDouble(final Object target) {
+            return function.applyAsLong(target);
+        }
+
+        @Override
+        public void writeTo(final Object target, final String name, final FieldSink sink) {
+            sink.putLong(name, function.applyAsLong(target));
+        }
+    }
+
+    private static class DoubleAccessor extends GetterAccessor {
+        private final ToDoubleFunction<Object> function;
+
+        private DoubleAccessor(final ToDoubleFunction<Object> function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object get(final Object target) {
+            return function.applyAsDouble(target);
+        }
+
+        @Override
+        public long getLong(final Object target) {
+            return (long) function.applyAsDouble(target);
+        }
+
+        @Override
+        public double getDouble(final Object target) {
+            return function.applyAsDouble(target);
+        }
+
+        @Override
+        public void writeTo(final Object target, final String name, final FieldSink sink) {
+            sink.putDouble(name, function.applyAsDouble(target));
+        }
+    }
+
+    private static class ObjectAccessor extends GetterAccessor {
+        private final Function<Object, Object> function;
+
+        private ObjectAccessor(final Function<Object, Object> function) {
+            this.function = function;
+        }
+
+        @Override
+        public Object get(final Object target) {
+            return function.apply(target);
+        }
+
+        @Override
+        public void writeTo(final Object target, final String name, final FieldSink sink) {
+            sink.put(name, function.apply(target));
+        }
+    }
+
+    private static class MethodHandleAccessor extends GetterAccessor {
+        private final MethodHandle handle;
+
+        private MethodHandleAccessor(final MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public Object get(final Object target) {
+            try {
+                return handle.invokeExact(target);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Getter threw checked exception", t);
+            }
+        }
+
+        @Override
+        public void writeTo(final Object target, final String name, final FieldSink sink) {
+            sink.put(name, get(target));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.influxdb.dto;
+
+import com.google.common.escape.Escaper;
+import com.google.common.escape.Escapers;
+import net.monofraps.influxmetrics.fields.FieldSink;
+
+import java.math.BigInteger;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes the parts of a line protocol line.
+ */
+public final class LineProtocol {
+    private static final Escaper FIELD_ESCAPER = Escapers.builder().addEscape('"', "\\\"").build();
+    private static final Escaper KEY_ESCAPER = Escapers.builder().addEscape(' ', "\\ ").addEscape(',', "\\,").addEscape('=', "\\=").build();
+    private static final ThreadLocal<NumberFormat> NUMBER_FORMAT = ThreadLocal.withInitial(() -> {
+        final NumberFormat numberFormat = NumberFormat.getInstance(Locale.ENGLISH);
+        numberFormat.setMaximumFractionDigits(340);
+        numberFormat.setGroupingUsed(false);
+        numberFormat.setMinimumFractionDigits(1);
+        return numberFormat;
+    });
+
+    private LineProtocol() {
+    }
+
+    public static String escapeKey(final String key) {
+        return KEY_ESCAPER.escape(key);
+    }
+
+    /**
+     * Appends the escaped measurement name and tags. Fields must be preceded by a space.
+     */
+    public static StringBuilder appendMeasurementAndTags(final StringBuilder sb, final String measurement, final Map<String, String> tags) {
+        return appendTags(sb.append(escapeKey(measurement)), tags);
+    }
+
+    /**
+     * Appends the escaped tags, each preceded by a comma.
+     */
+    public static StringBuilder appendTags(final StringBuilder sb, final Map<String, String> tags) {
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            sb.append(",").append(escapeKey(tag.getKey())).append("=").append(escapeKey(tag.getValue()));
+        }
+        return sb;
+    }
+
+    /**
+     * Appends the space separating the fields from the timestamp and the timestamp in nanoseconds.
+     */
+    public static StringBuilder appendTime(final StringBuilder sb, final long time, final TimeUnit precision) {
+        return sb.append(" ").append(TimeUnit.NANOSECONDS.convert(time, precision));
+    }
+
+    /**
+     * Appends fields in line protocol format to a StringBuilder. Long and double values are written without boxing.
+     */
+    public static final class FieldWriter implements FieldSink {
+        private StringBuilder sb;
+        private int fieldCount;
+
+        /**
+         * Starts writing the fields of a new line at the end of `sb`.
+         *
+         * @return This writer.
+         */
+        public FieldWriter startLine(final StringBuilder sb) {
+            this.sb = sb;
+            this.fieldCount = 0;
+            return this;
+        }
+
+        /**
+         * @return The number of fields written since the line was started.
+         */
+        public int getFieldCount() {
+            return fieldCount;
+        }
+
+        @Override
+        public void putLong(String name, long value) {
+            appendKey(name).append(value).append("i");
+        }
+
+        @Override
+        public void putDouble(String name, double value) {
+            appendKey(name).append(NUMBER_FORMAT.get().format(value));
+        }
+
+        @Override
+        public void put(String name, Object value) {
+            if (value == null) {
+                return;
+            }
+
+            appendKey(name);
+            if (value instanceof String) {
+                String stringValue = (String) value;
+                sb.append("\"").append(FIELD_ESCAPER.escape(stringValue)).append("\"");
+            } else if (value instanceof Integer || value instanceof Long || value instanceof BigInteger) {
+                sb.append(value).append("i");
+            } else if (value instanceof Number) {
+                sb.append(NUMBER_FORMAT.get().format(value));
+            } else {
+                sb.append(value);
+            }
+        }
+
+        private StringBuilder appendKey(String name) {
+            if (fieldCount++ > 0) {
+                sb.append(",");
+            }
+            return sb.append(escapeKey(name)).append("=");
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.influxdb.dto;
+
+/**
+ * A point whose line protocol representation was encoded in advance, e.g. straight from columnar storage.
+ */
+public class LineProtocolPoint extends Point {
+    private final String line;
+
+    public LineProtocolPoint(final String line) {
+        this.line = line;
+    }
+
+    @Override
+    public String lineProtocol() {
+        return line;
+    }
+
+    @Override
+    public String toString() {
+        return "Point [" + line + "]";
+    }
+}
@@ -0,0 +1,117 @@
+package net.monofraps.influxmetrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class EventRingBufferTest {
+    @Test
+    public void roundsCapacityToPowerOfTwo() throws Exception {
+        assertEquals(8, new EventRingBuffer(5).capacity());
+        assertEquals(8, new EventRingBuffer(8).capacity());
+        assertEquals(2, new EventRingBuffer(1).capacity());
+    }
+
+    @Test
+    public void rejectsClaimsWhenFull() throws Exception {
+        final EventRingBuffer buffer = new EventRingBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            buffer.publish(buffer.tryClaim());
+        }
+        assertEquals(-1, buffer.tryClaim());
+
+        assertEquals(1, buffer.drain(1, slot -> {
+        }));
+        assertEquals(4, buffer.tryClaim());
+        assertEquals(4, buffer.size());
+    }
+
+    @Test
+    public void claimsBatchesOnlyIfAllSlotsAreFree() throws Exception {
+        final EventRingBuffer buffer = new EventRingBuffer(4);
+        assertEquals(0, buffer.tryClaim(3));
+        assertEquals(-1, buffer.tryClaim(2));
+        assertEquals(3, buffer.tryClaim(1));
+
+        for (long position = 0; position < 4; position++) {
+            buffer.publish(position);
+        }
+        assertEquals(2, buffer.drain(2, slot -> {
+        }));
+        assertEquals(4, buffer.tryClaim(2));
+        assertEquals(4, buffer.size());
+    }
+
+    @Test
+    public void stopsDrainingAtUnpublishedSlot() throws Exception {
+        final EventRingBuffer buffer = new EventRingBuffer(8);
+        buffer.publish(buffer.tryClaim());
+        final long unpublished = buffer.tryClaim();
+        buffer.publish(buffer.tryClaim());
+
+        final List<Integer> slots = new ArrayList<>();
+        assertEquals(1, buffer.drain(8, slots::add));
+        assertEquals(0, buffer.drain(8, slots::add));
+
+        buffer.publish(unpublished);
+        assertEquals(2, buffer.drain(8, slots::add));
+        assertEquals(3, slots.size());
+    }
+
+    @Test
+    public void drainsInBatches() throws Exception {
+        final EventRingBuffer buffer = new EventRingBuffer(8);
+        final long[] values = new long[buffer.capacity()];
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 6; i++) {
+                final long position = buffer.tryClaim();
+                values[buffer.slot(position)] = i;
+                buffer.publish(position);
+            }
+
+            final List<Long> drained = new ArrayList<>();
+            assertEquals(4, buffer.drain(4, slot -> drained.add(values[slot])));
+            assertEquals(2, buffer.drain(4, slot -> drained.add(values[slot])));
+            assertEquals(0, buffer.drain(4, slot -> drained.add(values[slot])));
+            assertEquals(6, drained.size());
+            for (int i = 0; i < 6; i++) {
+                assertEquals(Long.valueOf(i), drained.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void concurrentProducersDoNotLoseElements() throws Exception {
+        final EventRingBuffer buffer = new EventRingBuffer(1024);
+        final long[] values = new long[buffer.capacity()];
+        final int producerCount = 4;
+        final int perProducer = 100000;
+        final CountDownLatch done = new CountDownLatch(producerCount);
+
+        for (int p = 0; p < producerCount; p++) {
+            new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long position;
+                    while ((position = buffer.tryClaim()) < 0) {
+                        Thread.yield();
+                    }
+                    values[buffer.slot(position)] = i;
+                    buffer.publish(position);
+                }
+                done.countDown();
+            }).start();
+        }
+
+        final AtomicLong sum = new AtomicLong();
+        while (done.getCount() > 0 || buffer.size() > 0) {
+            buffer.drain(256, slot -> sum.addAndGet(values[slot]));
+        }
+
+        assertEquals((long) producerCount * perProducer * (perProducer - 1) / 2, sum.get());
+    }
+}
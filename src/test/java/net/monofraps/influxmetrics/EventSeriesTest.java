@@ -0,0 +1,565 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.base.Strings;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import net.monofraps.influxmetrics.fields.LongGauge;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class EventSeriesTest {
+    @Test
+    public void reportsCommittedEvents() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").build();
+        series.commitEvent(new MetricsReportedEvent(1, 2, 3));
+        series.commitEvent(new MetricsReportedEvent(4, 5, 6));
+
+        final List<DataPoint> valueSets = new ArrayList<>(series.getValueSets());
+        assertEquals(2, valueSets.size());
+        assertEquals(1L, valueSets.get(0).getFields().get("BatchCount"));
+        assertEquals(5L, valueSets.get(1).getFields().get("PointCount"));
+        assertTrue(series.getValueSets().isEmpty());
+    }
+
+    @Test
+    public void dropsNewestEventsWhenFull() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withBuffer(2, EventSeries.OverflowPolicy.DROP_NEWEST).build();
+        for (int i = 0; i < 5; i++) {
+            series.commitEvent(new MetricsReportedEvent(i, 0, 0));
+        }
+
+        final List<DataPoint> valueSets = new ArrayList<>(series.getValueSets());
+        assertEquals(2, valueSets.size());
+        assertEquals(0L, valueSets.get(0).getFields().get("BatchCount"));
+        assertEquals(1L, valueSets.get(1).getFields().get("BatchCount"));
+        assertEquals(Long.valueOf(3), series.getDroppedEvents().getValue());
+    }
+
+    @Test
+    public void dropsOldestEventsWhenFull() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withBuffer(2, EventSeries.OverflowPolicy.DROP_OLDEST).build();
+        for (int i = 0; i < 5; i++) {
+            series.commitEvent(new MetricsReportedEvent(i, 0, 0));
+        }
+
+        final List<DataPoint> valueSets = new ArrayList<>(series.getValueSets());
+        assertEquals(2, valueSets.size());
+        assertEquals(3L, valueSets.get(0).getFields().get("BatchCount"));
+        assertEquals(4L, valueSets.get(1).getFields().get("BatchCount"));
+        assertEquals(Long.valueOf(3), series.getDroppedEvents().getValue());
+    }
+
+    @Test(timeout = 10000)
+    public void dropsNewestEventIfOldestIsNotPublished() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withBuffer(2, EventSeries.OverflowPolicy.DROP_OLDEST).build();
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread slowCommitter = new Thread(() -> series.commitEvent(new MetricsReportedEvent(0, 0, 0) {
+            @Override
+            public long getBatchCount() {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 0;
+            }
+        }));
+        slowCommitter.start();
+        writing.await();
+
+        series.commitEvent(new MetricsReportedEvent(1, 0, 0));
+        // the oldest slot is claimed by the slow committer and cannot be dropped
+        series.commitEvent(new MetricsReportedEvent(2, 0, 0));
+        assertEquals(Long.valueOf(1), series.getDroppedEvents().getValue());
+
+        release.countDown();
+        slowCommitter.join();
+        assertEquals(2, series.getValueSets().size());
+    }
+
+    @Test(timeout = 10000)
+    public void drainsAtMostOneBufferPerReport() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withBuffer(2048, EventSeries.OverflowPolicy.DROP_NEWEST).build();
+        for (int i = 0; i < 1024; i++) {
+            series.commitEvent(new MetricsReportedEvent(i, 0, 0));
+        }
+
+        // commits another event for every drained one, like producers keeping up with the reporter
+        final List<String> lines = new ArrayList<String>() {
+            @Override
+            public boolean add(final String line) {
+                if (size() < 10000) {
+                    series.commitEvent(new MetricsReportedEvent(0, 0, 0));
+                }
+                return super.add(line);
+            }
+        };
+        series.drainLineProtocol("reported", lines);
+        assertEquals(2048, lines.size());
+    }
+
+    @Test
+    public void blockingBufferDropsAfterTimeout() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withBlockingBuffer(2, 5, TimeUnit.MILLISECONDS).build();
+        series.commitEvent(new MetricsReportedEvent(0, 0, 0));
+        series.commitEvent(new MetricsReportedEvent(0, 0, 0));
+
+        final long start = System.nanoTime();
+        series.commitEvent(new MetricsReportedEvent(1, 0, 0));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertEquals(2, series.getValueSets().size());
+        assertEquals(Long.valueOf(1), series.getDroppedEvents().getValue());
+    }
+
+    @Test
+    public void registryRegistersDropSeries() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry();
+        registry.eventSeries("reported", ImmutableList.of(), MetricsReportedEvent.class, 2, EventSeries.OverflowPolicy.DROP_NEWEST);
+        final EventSeries<MetricsReportedEvent> series = registry.eventSeries("reported", ImmutableList.of(), MetricsReportedEvent.class);
+        for (int i = 0; i < 3; i++) {
+            series.commitEvent(new MetricsReportedEvent(i, 0, 0));
+        }
+
+        final Collection<InfluxSeries> allSeries = registry.getSeries();
+        assertEquals(2, allSeries.size());
+        final InfluxSeries dropSeries = allSeries.stream().filter(s -> s.getMeasurementName().equals("reported_dropped")).findAny().get();
+        assertEquals(1L, dropSeries.getValueSets().iterator().next().getFields().get("count"));
+    }
+
+    @Test
+    public void rollupReportsOneAggregatedPointPerInterval() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withRollup(true).build();
+        for (int i = 1; i <= 100; i++) {
+            series.commitEvent(new MetricsReportedEvent(i, 2 * i, 0));
+        }
+
+        final Collection<DataPoint> valueSets = series.getValueSets();
+        assertEquals(1, valueSets.size());
+        final Map<String, Object> fields = valueSets.iterator().next().getFields();
+        assertEquals(100L, fields.get("count"));
+        assertEquals(5050L, fields.get("BatchCount_sum"));
+        assertEquals(1L, fields.get("BatchCount_min"));
+        assertEquals(100L, fields.get("BatchCount_max"));
+        assertEquals(200L, fields.get("PointCount_max"));
+        assertEquals(50.0, (Double) fields.get("BatchCount_p50"), 1.0);
+        assertEquals(99.0, (Double) fields.get("BatchCount_p99"), 1.0);
+        assertTrue(series.getFieldNames().containsAll(fields.keySet()));
+
+        assertTrue(series.getValueSets().isEmpty());
+    }
+
+    @Test
+    public void rollupCountsAndSumsEveryEventInTheSameInterval() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withRollup(false).build();
+        final Thread[] producers = new Thread[4];
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = new Thread(() -> {
+                for (int j = 0; j < 100000; j++) {
+                    series.commitEvent(new MetricsReportedEvent(1, 0, 0));
+                }
+            });
+            producers[i].start();
+        }
+
+        long totalCount = 0;
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread producer : producers) {
+                running |= producer.isAlive();
+            }
+            for (DataPoint dataPoint : series.getValueSets()) {
+                final Map<String, Object> fields = dataPoint.getFields();
+                assertEquals(fields.get("count"), fields.get("BatchCount_sum"));
+                totalCount += (Long) fields.get("count");
+            }
+        }
+        assertEquals(400000, totalCount);
+    }
+
+    @Test
+    public void probabilitySamplingKeepsFractionOfEvents() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withSampling(0.1).build();
+        for (int i = 0; i < 5000; i++) {
+            series.commitEvent(new MetricsReportedEvent(i, 0, 0));
+        }
+
+        final Collection<DataPoint> valueSets = series.getValueSets();
+        assertTrue(valueSets.size() > 350 && valueSets.size() < 650);
+        assertEquals(0.1, valueSets.iterator().next().getFields().get(EventSeries.SAMPLE_RATE_FIELD));
+        assertTrue(series.getFieldNames().contains(EventSeries.SAMPLE_RATE_FIELD));
+    }
+
+    @Test
+    public void rateLimitCapsEventsPerSecond() throws Exception {
+        final AtomicLong nanos = new AtomicLong();
+        final Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withRateLimit(10, ticker).build();
+        for (int i = 0; i < 1000; i++) {
+            series.commitEvent(new MetricsReportedEvent(i, 0, 0));
+        }
+
+        Collection<DataPoint> valueSets = series.getValueSets();
+        assertEquals(10, valueSets.size());
+        assertEquals(0.01, (Double) valueSets.iterator().next().getFields().get(EventSeries.SAMPLE_RATE_FIELD), 1e-9);
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        for (int i = 0; i < 100; i++) {
+            series.commitEvent(new MetricsReportedEvent(i, 0, 0));
+        }
+
+        valueSets = series.getValueSets();
+        assertEquals(5, valueSets.size());
+        assertEquals(0.05, (Double) valueSets.iterator().next().getFields().get(EventSeries.SAMPLE_RATE_FIELD), 1e-9);
+    }
+
+    @Test
+    public void reservoirKeepsFixedSamplePerInterval() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withReservoir(10).build();
+        for (int i = 0; i < 1000; i++) {
+            series.commitEvent(new MetricsReportedEvent(i, 0, 0));
+        }
+
+        final Collection<DataPoint> valueSets = series.getValueSets();
+        assertEquals(10, valueSets.size());
+        for (DataPoint dataPoint : valueSets) {
+            assertEquals(0.01, dataPoint.getFields().get(EventSeries.SAMPLE_RATE_FIELD));
+        }
+
+        series.commitEvent(new MetricsReportedEvent(0, 0, 0));
+        final Collection<DataPoint> nextValueSets = series.getValueSets();
+        assertEquals(1, nextValueSets.size());
+        assertEquals(1.0, nextValueSets.iterator().next().getFields().get(EventSeries.SAMPLE_RATE_FIELD));
+    }
+
+    @Test
+    public void drainedRollupsAreStampedWithTheGivenTimestamp() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withRollup(false).build();
+        series.commitEvent(new MetricsReportedEvent(1, 2, 3));
+
+        final List<String> lines = new ArrayList<>();
+        series.drainLineProtocol("reported", ImmutableSet.of(), 1234, lines);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).endsWith(" " + TimeUnit.MILLISECONDS.toNanos(1234)));
+    }
+
+    @Test
+    public void drainsEventsAsLineProtocol() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withSampling(1).build();
+        series.commitEvent(new MetricsReportedEvent(1, 2, 3));
+
+        final List<String> lines = new ArrayList<>();
+        series.drainLineProtocol("reported,host=a", lines);
+        assertEquals(1, lines.size());
+
+        final String line = lines.get(0);
+        assertTrue(line.startsWith("reported,host=a "));
+        assertTrue(line.contains("BatchCount=1i"));
+        assertTrue(line.contains("PointCount=2i"));
+        assertTrue(line.contains("ReportTime=3i"));
+        assertTrue(line.contains("sample_rate=1.0 "));
+        assertTrue(series.getValueSets().isEmpty());
+    }
+
+    @Test
+    public void reportsAnnotatedGettersAsPerEventTags() throws Exception {
+        final EventSeries<RequestEvent> series = EventSeries.fromPojo(RequestEvent.class, "requests").build();
+        series.commitEvent(new RequestEvent("ok", "eu west", 10));
+        series.commitEvent(new RequestEvent("failed", "eu west", 20));
+        series.commitEvent(new RequestEvent("ok", "eu west", 30));
+        series.commitEvent(new RequestEvent("ok", null, 40));
+
+        final List<String> lines = new ArrayList<>();
+        series.drainLineProtocol("requests", lines);
+        assertEquals(4, lines.size());
+        assertTrue(lines.get(0).contains(",outcome=ok"));
+        assertTrue(lines.get(0).contains(",Region=eu\\ west"));
+        assertTrue(lines.get(0).contains(" Latency=10i "));
+        assertTrue(lines.get(1).contains(",outcome=failed"));
+        assertTrue(lines.get(3).startsWith("requests,outcome=ok Latency=40i "));
+
+        series.commitEvent(new RequestEvent("failed", "us", 50));
+        final DataPoint dataPoint = series.getValueSets().iterator().next();
+        assertEquals("failed", dataPoint.getTags().get("outcome"));
+        assertEquals("us", dataPoint.getTags().get("Region"));
+        assertFalse(dataPoint.getFields().containsKey("Outcome"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsEventTagsClashingWithSeriesTags() throws Exception {
+        EventSeries.fromPojo(RequestEvent.class, "requests").withTag(new MetricTag("outcome", "ok")).build();
+    }
+
+    @Test
+    public void leavesOutOverriddenEventTags() throws Exception {
+        final EventSeries<RequestEvent> series = EventSeries.fromPojo(RequestEvent.class, "requests").build();
+        series.commitEvent(new RequestEvent("ok", "eu", 10));
+
+        final List<String> lines = new ArrayList<>();
+        series.drainLineProtocol("requests,Region=us", ImmutableSet.of("Region"), System.currentTimeMillis(), lines);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).startsWith("requests,Region=us,outcome=ok Latency=10i "));
+    }
+
+    @Test
+    public void rollupAggregatesPerTagSet() throws Exception {
+        final EventSeries<RequestEvent> series = EventSeries.fromPojo(RequestEvent.class, "requests").withRollup(false).build();
+        series.commitEvent(new RequestEvent("ok", "eu", 10));
+        series.commitEvent(new RequestEvent("failed", "eu", 20));
+        series.commitEvent(new RequestEvent("ok", "eu", 30));
+
+        final Map<String, Map<String, Object>> fieldsByOutcome = new HashMap<>();
+        for (DataPoint dataPoint : series.getValueSets()) {
+            fieldsByOutcome.put(dataPoint.getTags().get("outcome"), dataPoint.getFields());
+        }
+        assertEquals(2, fieldsByOutcome.size());
+        assertEquals(2L, fieldsByOutcome.get("ok").get("count"));
+        assertEquals(40L, fieldsByOutcome.get("ok").get("Latency_sum"));
+        assertEquals(1L, fieldsByOutcome.get("failed").get("count"));
+    }
+
+    @Test
+    public void rollupFieldNamesAreKnownBeforeTheFirstEvent() throws Exception {
+        final EventSeries<RequestEvent> series = EventSeries.fromPojo(RequestEvent.class, "requests").withRollup(false).build();
+        assertEquals(ImmutableList.of("count", "Latency_sum", "Latency_min", "Latency_max"), series.getFieldNames());
+        assertTrue(series.getValueSets().isEmpty());
+
+        series.commitEvent(new RequestEvent("ok", "eu", 10));
+        assertEquals(1, series.getValueSets().size());
+    }
+
+    @Test
+    public void newTagSetsBeyondTheLimitShareTheOverflowTagSet() throws Exception {
+        final EventSeries<RequestEvent> series = EventSeries.fromPojo(RequestEvent.class, "requests").withRollup(false).withMaxTagSets(3).build();
+        for (int i = 0; i < 10; i++) {
+            series.commitEvent(new RequestEvent("ok", "region-" + i, i));
+        }
+        series.commitEvent(new RequestEvent("ok", "region-1", 100));
+
+        final Map<String, Map<String, Object>> fieldsByRegion = new HashMap<>();
+        for (DataPoint dataPoint : series.getValueSets()) {
+            fieldsByRegion.put(dataPoint.getTags().get("Region"), dataPoint.getFields());
+        }
+        assertEquals(3, fieldsByRegion.size());
+        assertEquals(1L, fieldsByRegion.get("region-0").get("count"));
+        assertEquals(2L, fieldsByRegion.get("region-1").get("count"));
+        assertEquals(8L, fieldsByRegion.get(InfluxSeriesRegistry.OVERFLOW_TAG_VALUE).get("count"));
+    }
+
+    @Test
+    public void stagedEventsArePublishedWhenFullOrDrained() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withThreadLocalStaging(4).build();
+        for (int i = 0; i < 6; i++) {
+            series.commitEvent(new MetricsReportedEvent(i, 0, 0));
+        }
+
+        final List<DataPoint> valueSets = new ArrayList<>(series.getValueSets());
+        assertEquals(6, valueSets.size());
+        for (int i = 0; i < 6; i++) {
+            assertEquals((long) i, valueSets.get(i).getFields().get("BatchCount"));
+        }
+        assertTrue(series.getValueSets().isEmpty());
+    }
+
+    @Test
+    public void stagedEventsOfTerminatedThreadsAreReported() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withThreadLocalStaging(16).build();
+        final Thread thread = new Thread(() -> {
+            series.commitEvent(new MetricsReportedEvent(1, 2, 3));
+            series.commitEvent(new MetricsReportedEvent(4, 5, 6));
+        });
+        thread.start();
+        thread.join();
+
+        assertEquals(2, series.getValueSets().size());
+        assertTrue(series.getValueSets().isEmpty());
+    }
+
+    @Test
+    public void commitsEventsInBatches() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withBuffer(4, EventSeries.OverflowPolicy.DROP_NEWEST).build();
+        series.commitEvents(ImmutableList.of(new MetricsReportedEvent(1, 0, 0), new MetricsReportedEvent(2, 0, 0), new MetricsReportedEvent(3, 0, 0)));
+        // does not fit in a single claim, the remaining slot is filled event by event
+        series.commitEvents(ImmutableList.of(new MetricsReportedEvent(4, 0, 0), new MetricsReportedEvent(5, 0, 0)));
+
+        final List<DataPoint> valueSets = new ArrayList<>(series.getValueSets());
+        assertEquals(4, valueSets.size());
+        assertEquals(4L, valueSets.get(3).getFields().get("BatchCount"));
+        assertEquals(Long.valueOf(1), series.getDroppedEvents().getValue());
+    }
+
+    @Test
+    public void batchIsPublishedIfTagGetterThrows() throws Exception {
+        final EventSeries<RequestEvent> series = EventSeries.fromPojo(RequestEvent.class, "requests").withBuffer(8, EventSeries.OverflowPolicy.DROP_NEWEST).build();
+        final RequestEvent failing = new RequestEvent("ok", "eu", 20) {
+            @Override
+            public String getRegion() {
+                throw new IllegalStateException("region unknown");
+            }
+        };
+        series.commitEvents(ImmutableList.of(new RequestEvent("ok", "eu", 10), failing, new RequestEvent("ok", "eu", 30)));
+        series.commitEvent(new RequestEvent("ok", "eu", 40));
+
+        final List<DataPoint> valueSets = new ArrayList<>(series.getValueSets());
+        assertEquals(3, valueSets.size());
+        assertEquals(30L, valueSets.get(1).getFields().get("Latency"));
+        assertEquals(40L, valueSets.get(2).getFields().get("Latency"));
+    }
+
+    @Test
+    public void offHeapBufferReportsEncodedEvents() throws Exception {
+        final EventSeries<RequestEvent> series = EventSeries.fromPojo(RequestEvent.class, "requests").withOffHeapBuffer(1024, 4096, EventSeries.OverflowPolicy.DROP_NEWEST).build();
+        series.commitEvent(new RequestEvent("ok", "eu west", 10));
+        series.commitEvent(new RequestEvent("failed", "eu west", 20));
+
+        final List<String> lines = new ArrayList<>();
+        series.drainLineProtocol("requests", lines);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains(",Region=eu\\ west"));
+        assertTrue(lines.get(0).contains(" Latency=10i "));
+        assertTrue(lines.get(1).contains(",outcome=failed"));
+
+        series.commitEvent(new RequestEvent("ok", "us", 30));
+        final DataPoint dataPoint = series.getValueSets().iterator().next();
+        assertEquals("us", dataPoint.getTags().get("Region"));
+        assertEquals(30L, dataPoint.getFields().get("Latency"));
+        assertTrue(series.getValueSets().isEmpty());
+    }
+
+    @Test
+    public void offHeapBufferKeepsEventsOfRolledBackReports() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withOffHeapBuffer(72, 144, EventSeries.OverflowPolicy.DROP_NEWEST).build();
+        final LongGauge usedBytes = (LongGauge) series.getOffHeapBufferFields().get(2);
+        for (int i = 0; i < 3; i++) {
+            series.commitEvent(new MetricsReportedEvent(i, 0, 0));
+        }
+
+        assertEquals(3, series.getValueSets().size());
+        series.rollbackValueSets();
+        series.commitEvent(new MetricsReportedEvent(3, 0, 0));
+
+        final List<DataPoint> valueSets = new ArrayList<>(series.getValueSets());
+        assertEquals(4, valueSets.size());
+        assertEquals(0L, valueSets.get(0).getFields().get("BatchCount"));
+        assertEquals(3L, valueSets.get(3).getFields().get("BatchCount"));
+        assertEquals(144L, usedBytes.getLongValue());
+
+        series.commitValueSets();
+        assertEquals(0L, usedBytes.getLongValue());
+        assertTrue(series.getValueSets().isEmpty());
+    }
+
+    @Test
+    public void offHeapBufferReleasesChunksIfDrainFails() throws Exception {
+        final EventSeries<MetricsReportedEvent> series = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withOffHeapBuffer(72, 144, EventSeries.OverflowPolicy.DROP_NEWEST).build();
+        for (int i = 0; i < 4; i++) {
+            series.commitEvent(new MetricsReportedEvent(i, 0, 0));
+        }
+
+        try {
+            series.drainLineProtocol("reported", new ArrayList<String>() {
+                @Override
+                public boolean add(final String line) {
+                    throw new IllegalStateException("cannot take lines");
+                }
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        for (int i = 0; i < 4; i++) {
+            series.commitEvent(new MetricsReportedEvent(i, 0, 0));
+        }
+        assertEquals(4, series.getValueSets().size());
+        assertEquals(Long.valueOf(0), series.getDroppedEvents().getValue());
+    }
+
+    @Test
+    public void offHeapBufferEncodesRecordsLargerThanTheInitialScratchBuffer() throws Exception {
+        final EventSeries<RequestEvent> series = EventSeries.fromPojo(RequestEvent.class, "requests").withOffHeapBuffer(4096, 4096, EventSeries.OverflowPolicy.DROP_NEWEST).build();
+        final String region = Strings.repeat("r", 1000);
+        series.commitEvent(new RequestEvent("ok", region, 10));
+
+        assertEquals(region, series.getValueSets().iterator().next().getTags().get("Region"));
+        assertEquals(Long.valueOf(0), series.getDroppedEvents().getValue());
+    }
+
+    @Test
+    public void offHeapBufferDropsWhenFull() throws Exception {
+        // two events of 36 bytes per chunk, two chunks
+        final EventSeries<MetricsReportedEvent> dropNewest = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withOffHeapBuffer(72, 144, EventSeries.OverflowPolicy.DROP_NEWEST).build();
+        final EventSeries<MetricsReportedEvent> dropOldest = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withOffHeapBuffer(72, 144, EventSeries.OverflowPolicy.DROP_OLDEST).build();
+        for (int i = 0; i < 5; i++) {
+            dropNewest.commitEvent(new MetricsReportedEvent(i, 0, 0));
+            dropOldest.commitEvent(new MetricsReportedEvent(i, 0, 0));
+        }
+
+        final List<DataPoint> newest = new ArrayList<>(dropNewest.getValueSets());
+        assertEquals(4, newest.size());
+        assertEquals(3L, newest.get(3).getFields().get("BatchCount"));
+        assertEquals(Long.valueOf(1), dropNewest.getDroppedEvents().getValue());
+
+        final List<DataPoint> oldest = new ArrayList<>(dropOldest.getValueSets());
+        assertEquals(3, oldest.size());
+        assertEquals(2L, oldest.get(0).getFields().get("BatchCount"));
+        assertEquals(Long.valueOf(2), dropOldest.getDroppedEvents().getValue());
+    }
+
+    @Test
+    public void registryRegistersOffHeapBufferSeries() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry();
+        final EventSeries<MetricsReportedEvent> series = registry.eventSeries("reported", ImmutableList.of(), MetricsReportedEvent.class, builder -> builder.withOffHeapBuffer(72, 144, EventSeries.OverflowPolicy.DROP_NEWEST));
+        series.commitEvent(new MetricsReportedEvent(1, 2, 3));
+
+        final InfluxSeries bufferSeries = registry.getSeries().stream().filter(s -> s.getMeasurementName().equals("reported_offheap_buffer")).findAny().get();
+        final Map<String, Object> fields = bufferSeries.getValueSets().iterator().next().getFields();
+        assertEquals(144L, fields.get("limit_bytes"));
+        assertEquals(72L, fields.get("allocated_bytes"));
+        assertEquals(36L, fields.get("used_bytes"));
+    }
+
+    public static class RequestEvent {
+        private final String outcome;
+        private final String region;
+        private final long latency;
+
+        public RequestEvent(final String outcome, final String region, final long latency) {
+            this.outcome = outcome;
+            this.region = region;
+            this.latency = latency;
+        }
+
+        @EventTag("outcome")
+        public String getOutcome() {
+            return outcome;
+        }
+
+        @EventTag
+        public String getRegion() {
+            return region;
+        }
+
+        public long getLatency() {
+            return latency;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package net.monofraps.influxmetrics;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class FieldValuesTest {
+    @Test
+    public void storesPrimitiveAndObjectValues() throws Exception {
+        final FieldValues values = new FieldValues(1);
+        values.putLong("long", 1);
+        values.putDouble("double", 2.5);
+        values.put("string", "value");
+        values.put("integer", 3);
+
+        final Map<String, Object> expected = new HashMap<>();
+        expected.put("long", 1L);
+        expected.put("double", 2.5);
+        expected.put("string", "value");
+        // only long and double values are stored unboxed, other values keep their type
+        expected.put("integer", 3);
+
+        assertEquals(4, values.size());
+        assertEquals(expected, values.toMap());
+    }
+
+    @Test
+    public void skipsNullValues() throws Exception {
+        final FieldValues values = new FieldValues();
+        values.put("null", null);
+
+        assertTrue(values.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDuplicateFieldNames() throws Exception {
+        final FieldValues values = new FieldValues();
+        values.putLong("count", 1);
+        values.put("count", 2L);
+    }
+}
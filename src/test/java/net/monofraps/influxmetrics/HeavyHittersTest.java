@@ -0,0 +1,84 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class HeavyHittersTest {
+    @Test
+    public void findsMostFrequentKeys() throws Exception {
+        final HeavyHitters<String> heavyHitters = new HeavyHitters<>("endpoints", ImmutableList.of(), 3, 30, true);
+        for (int i = 0; i < 10000; i++) {
+            heavyHitters.offer("noise-" + i);
+            if (i % 2 == 0) {
+                heavyHitters.offer("first");
+            }
+            if (i % 4 == 0) {
+                heavyHitters.offer("second", 2);
+            }
+            if (i % 10 == 0) {
+                heavyHitters.offer("third");
+            }
+        }
+
+        final List<HeavyHitters.Entry<String>> topK = heavyHitters.getTopK();
+        assertEquals(3, topK.size());
+        assertEquals("first", topK.get(0).getKey());
+        assertEquals("second", topK.get(1).getKey());
+        assertEquals("third", topK.get(2).getKey());
+        assertTrue(topK.get(0).getCount() - topK.get(0).getError() <= 5000);
+        assertTrue(topK.get(0).getCount() >= 5000);
+    }
+
+    @Test
+    public void reportsOneDataPointPerRank() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry();
+        final HeavyHitters<String> heavyHitters = new HeavyHitters<>("endpoints", ImmutableList.of(), 2);
+        heavyHitters.registerSeries(registry);
+
+        heavyHitters.offer("a", 5);
+        heavyHitters.offer("b", 3);
+        heavyHitters.offer("c", 1);
+
+        assertEquals(1, registry.getSeries().size());
+        final InfluxSeries series = registry.getSeries().iterator().next();
+        final Map<String, Map<String, Object>> reported = new HashMap<>();
+        for (DataPoint dataPoint : series.getValueSets()) {
+            reported.put(dataPoint.getTags().get("rank"), dataPoint.getFields());
+        }
+
+        assertEquals(2, reported.size());
+        assertEquals("a", reported.get("1").get("key"));
+        assertEquals(5L, reported.get("1").get("count"));
+        assertEquals("b", reported.get("2").get("key"));
+
+        for (DataPoint dataPoint : series.getValueSets()) {
+            assertEquals("", dataPoint.getFields().get("key"));
+        }
+    }
+
+    @Test
+    public void everyCollectionTakesAllRanksFromOneList() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry();
+        final HeavyHitters<String> heavyHitters = new HeavyHitters<>("endpoints", ImmutableList.of(), 2, 20, false);
+        heavyHitters.registerSeries(registry);
+        heavyHitters.offer("a", 5);
+        heavyHitters.offer("b", 3);
+
+        // a second reader, e.g. another reporter, collects in between
+        final InfluxSeries series = registry.getSeries().iterator().next();
+        final List<DataPoint> first = ImmutableList.copyOf(series.getValueSets());
+        heavyHitters.offer("b", 5);
+        final List<DataPoint> second = ImmutableList.copyOf(series.getValueSets());
+
+        assertEquals("a", first.get(0).getFields().get("key"));
+        assertEquals("b", first.get(1).getFields().get("key"));
+        assertEquals("b", second.get(0).getFields().get("key"));
+        assertEquals("a", second.get(1).getFields().get("key"));
+    }
+}
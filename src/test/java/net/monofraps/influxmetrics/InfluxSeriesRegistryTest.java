@@ -0,0 +1,222 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.collect.ImmutableList;
+import net.monofraps.influxmetrics.fields.Counter;
+import net.monofraps.influxmetrics.fields.Gauge;
+import net.monofraps.influxmetrics.fields.LongGauge;
+import net.monofraps.influxmetrics.fields.StripedCounter;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class InfluxSeriesRegistryTest {
+    @Test
+    public void seriesWithCollidingHashCodesAreDistinct() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry();
+        // "Aa" and "BB" have the same String hash code
+        final TimeSeries first = registry.timeSeries("Aa", ImmutableList.of(), ImmutableList.of(new StripedCounter("count")));
+        final TimeSeries second = registry.timeSeries("BB", ImmutableList.of(), ImmutableList.of(new StripedCounter("count")));
+
+        assertNotSame(first, second);
+        assertEquals(2, registry.getSeries().size());
+    }
+
+    @Test
+    public void tagOrderDoesNotMatter() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry();
+        final MetricTag host = new MetricTag("host", "a");
+        final MetricTag region = new MetricTag("region", "eu");
+        final TimeSeries first = registry.timeSeries("requests", ImmutableList.of(host, region), ImmutableList.of(new StripedCounter("count")));
+        final TimeSeries second = registry.timeSeries("requests", ImmutableList.of(region, host), ImmutableList.of(new StripedCounter("count")));
+        final TimeSeries third = registry.timeSeries("requests", ImmutableList.of(region, new MetricTag("host", "b")), ImmutableList.of(new StripedCounter("count")));
+
+        assertSame(first, second);
+        assertNotSame(first, third);
+    }
+
+    @Test
+    public void handlesAreBoundToRegisteredSeries() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry();
+        final SeriesHandle<EventSeries<MetricsReportedEvent>> handle = registry.bindEventSeries("reported", ImmutableList.of(), MetricsReportedEvent.class);
+        handle.get().commitEvent(new MetricsReportedEvent(1, 2, 3));
+
+        assertSame(handle.get(), registry.eventSeries("reported", ImmutableList.of(), MetricsReportedEvent.class));
+        assertEquals(1, handle.get().getValueSets().size());
+    }
+
+    @Test
+    public void evictsIdleSeriesAndNotifiesListeners() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry(1, TimeUnit.MILLISECONDS);
+        final List<InfluxSeries> removedSeries = new ArrayList<>();
+        registry.registerEventListener(new RegistryEventListener() {
+            @Override
+            public void onSeriesRegistered(InfluxSeries series) {
+            }
+
+            @Override
+            public void onSeriesRemoved(InfluxSeries series) {
+                removedSeries.add(series);
+            }
+        });
+        final TimeSeries idle = registry.timeSeries("idle", ImmutableList.of(), ImmutableList.of(new StripedCounter("count")));
+        final EventSeries<MetricsReportedEvent> events = registry.eventSeries("reported", ImmutableList.of(), MetricsReportedEvent.class);
+        Thread.sleep(5);
+
+        events.commitEvent(new MetricsReportedEvent(1, 2, 3));
+        assertEquals(1, registry.evictIdleSeries());
+        assertEquals(ImmutableList.of(idle), removedSeries);
+        assertEquals(2, registry.getSeries().size());
+
+        Thread.sleep(5);
+        assertEquals(1, registry.evictIdleSeries());
+        // the series counting dropped events goes along with its event series
+        assertTrue(registry.getSeries().isEmpty());
+        assertEquals(3, removedSeries.size());
+    }
+
+    @Test
+    public void keepsSeriesReportingChangedValues() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry(1, TimeUnit.MILLISECONDS);
+        final Counter counter = new Counter("count");
+        final TimeSeries series = registry.timeSeries("requests", ImmutableList.of(), ImmutableList.of(counter));
+        for (int i = 0; i < 3; i++) {
+            counter.inc();
+            series.getValueSets();
+            Thread.sleep(5);
+
+            assertEquals(0, registry.evictIdleSeries());
+        }
+
+        // unchanged values do not count as use
+        series.getValueSets();
+        Thread.sleep(5);
+        assertEquals(1, registry.evictIdleSeries());
+    }
+
+    @Test
+    public void keepsPinnedSeries() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry(1, TimeUnit.MILLISECONDS);
+        registry.pin(registry.timeSeries("queue", ImmutableList.of(), ImmutableList.of(new LongGauge("size", () -> 1))));
+        Thread.sleep(5);
+
+        assertEquals(0, registry.evictIdleSeries());
+        assertEquals(1, registry.getSeries().size());
+    }
+
+    @Test
+    public void keepsSeriesWithoutTtl() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry();
+        registry.timeSeries("idle", ImmutableList.of(), ImmutableList.of(new StripedCounter("count")));
+        Thread.sleep(5);
+
+        assertEquals(0, registry.evictIdleSeries());
+        assertEquals(1, registry.getSeries().size());
+    }
+
+    @Test
+    public void handlesRegisterEvictedSeriesAgain() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry(1, TimeUnit.MILLISECONDS);
+        final StripedCounter counter = new StripedCounter("count");
+        final SeriesHandle<TimeSeries> handle = registry.bindTimeSeries("requests", ImmutableList.of(), ImmutableList.of(counter));
+        Thread.sleep(5);
+
+        assertEquals(1, registry.evictIdleSeries());
+        assertNotNull(handle.get());
+        assertEquals(1, registry.getSeries().size());
+        assertSame(counter, handle.get().getFields().get(0));
+    }
+
+    @Test
+    public void collapsesSeriesBeyondHardLimitIntoOverflowSeries() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry();
+        registry.setCardinalityLimits("requests", 1, 2);
+        final List<EventSeries<MetricsReportedEvent>> series = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            series.add(registry.eventSeries("requests", ImmutableList.of(new MetricTag("id", String.valueOf(i))), MetricsReportedEvent.class));
+        }
+
+        assertNotSame(series.get(0), series.get(1));
+        assertSame(series.get(2), series.get(3));
+        assertEquals(InfluxSeriesRegistry.OVERFLOW_TAG_VALUE, series.get(2).getTags().get("id"));
+        assertEquals(2, registry.getRejectedRegistrations("requests"));
+
+        final Map<String, Object> cardinality = registry.getSeries().stream().filter(s -> s.getMeasurementName().equals(InfluxSeriesRegistry.CARDINALITY_MEASUREMENT)).findAny().get().getValueSets().iterator().next().getFields();
+        assertEquals(2L, cardinality.get("series"));
+        assertEquals(2L, cardinality.get("rejected"));
+        assertEquals(1L, cardinality.get("over_soft_limit"));
+    }
+
+    @Test
+    public void evictedSeriesFreeCardinality() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry(1, TimeUnit.MILLISECONDS);
+        registry.setCardinalityLimits(1, 1);
+        final TimeSeries first = registry.timeSeries("requests", ImmutableList.of(new MetricTag("id", "1")), ImmutableList.of(new StripedCounter("count")));
+        Thread.sleep(5);
+
+        registry.evictIdleSeries();
+        final TimeSeries second = registry.timeSeries("requests", ImmutableList.of(new MetricTag("id", "2")), ImmutableList.of(new StripedCounter("count")));
+        assertEquals("2", second.getTags().get("id"));
+        assertEquals(0, registry.getRejectedRegistrations("requests"));
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void snapshotStampsAllSeriesWithOneTimestamp() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry();
+        for (int i = 0; i < 10; i++) {
+            registry.timeSeries("requests", ImmutableList.of(new MetricTag("id", String.valueOf(i))), ImmutableList.of(new StripedCounter("count")));
+        }
+
+        final RegistrySnapshot snapshot = registry.snapshot();
+        assertEquals(10, snapshot.getSeries().size());
+        for (RegistrySnapshot.SeriesValues series : snapshot.getSeries()) {
+            assertEquals(1, series.getDataPoints().size());
+            assertEquals(snapshot.getTimestamp(), series.getDataPoints().get(0).getTime());
+        }
+    }
+
+    @Test
+    public void collectsLargeRegistriesInParallel() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry();
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        registry.setSnapshotParallelism(pool, 100);
+        for (int i = 0; i < 1000; i++) {
+            registry.timeSeries("requests", ImmutableList.of(new MetricTag("id", String.valueOf(i))), ImmutableList.of(new Gauge<>("thread", () -> Thread.currentThread().getName())));
+        }
+
+        final RegistrySnapshot snapshot = registry.snapshot();
+        pool.shutdown();
+
+        final List<InfluxSeries> series = new ArrayList<>(registry.getSeries());
+        assertEquals(series.size(), snapshot.getSeries().size());
+        for (int i = 0; i < series.size(); i++) {
+            assertSame(series.get(i), snapshot.getSeries().get(i).getSeries());
+            assertTrue(((String) snapshot.getSeries().get(i).getDataPoints().get(0).getFields().get("thread")).startsWith("ForkJoinPool"));
+        }
+    }
+
+    @Test
+    public void snapshotsFailingSeriesWithoutDataPoints() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry();
+        registry.timeSeries("broken", ImmutableList.of(), ImmutableList.of(new Gauge<>("value", () -> {
+            throw new IllegalStateException();
+        })));
+        registry.timeSeries("requests", ImmutableList.of(), ImmutableList.of(new StripedCounter("count")));
+
+        final RegistrySnapshot snapshot = registry.snapshot();
+        for (RegistrySnapshot.SeriesValues series : snapshot.getSeries()) {
+            assertEquals(series.getMeasurementName().equals("broken") ? 0 : 1, series.getDataPoints().size());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBlockingBufferWithoutTimeout() throws Exception {
+        new InfluxSeriesRegistry().eventSeries("requests", ImmutableList.of(), MetricsReportedEvent.class, 16, EventSeries.OverflowPolicy.BLOCK);
+    }
+}
@@ -0,0 +1,62 @@
+package net.monofraps.influxmetrics;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ScheduledReporterTest {
+    @Test
+    public void stopReportsEventsCommittedSinceTheLastReport() throws Exception {
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry();
+        final EventSeries<MetricsReportedEvent> series = registry.eventSeries("reported", ImmutableList.of(), MetricsReportedEvent.class);
+        final List<DataPoint> reported = new ArrayList<>();
+        final ScheduledReporter reporter = new ScheduledReporter(ImmutableList.of(registry), "test") {
+            @Override
+            protected void report(final InfluxSeriesRegistry registry) {
+                reported.addAll(series.getValueSets());
+            }
+        };
+        reporter.start(1, TimeUnit.HOURS);
+
+        series.commitEvent(new MetricsReportedEvent(1, 2, 3));
+        reporter.stop();
+
+        assertEquals(1, reported.size());
+        assertEquals(1L, reported.get(0).getFields().get("BatchCount"));
+    }
+
+    @Test(timeout = 10000)
+    public void stopSkipsFinalReportWhileAReportIsRunning() throws Exception {
+        final CountDownLatch reporting = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger reports = new AtomicInteger();
+        final ScheduledReporter reporter = new ScheduledReporter(ImmutableList.of(new InfluxSeriesRegistry()), "test") {
+            @Override
+            protected void report(final InfluxSeriesRegistry registry) {
+                reports.incrementAndGet();
+                reporting.countDown();
+                // a report stuck in I/O which does not respond to interrupts
+                while (true) {
+                    try {
+                        release.await();
+                        return;
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }
+        };
+        reporter.start(1, TimeUnit.MILLISECONDS);
+        reporting.await();
+
+        reporter.stop();
+        assertEquals(1, reports.get());
+        release.countDown();
+    }
+}
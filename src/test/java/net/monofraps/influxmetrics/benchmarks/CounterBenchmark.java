@@ -0,0 +1,43 @@
+package net.monofraps.influxmetrics.benchmarks;
+
+import net.monofraps.influxmetrics.fields.Counter;
+import net.monofraps.influxmetrics.fields.StripedCounter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares Counter and StripedCounter increments under contention.
+ * Run with e.g. {@code -t 1} and {@code -t 64} to see the difference between the uncontended and contended case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CounterBenchmark {
+    private final Counter counter = new Counter("counter");
+    private final StripedCounter stripedCounter = new StripedCounter("striped");
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void counterInc() {
+        counter.inc();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void stripedCounterInc() {
+        stripedCounter.inc();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(CounterBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,71 @@
+package net.monofraps.influxmetrics.benchmarks;
+
+import net.monofraps.influxmetrics.DataPoint;
+import net.monofraps.influxmetrics.EventSeries;
+import net.monofraps.influxmetrics.MetricsReportedEvent;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the heap cost of buffering events as one DataPoint with a HashMap per event against the columnar and the
+ * off-heap buffer of EventSeries.
+ * <p>
+ * Both buffers are kept full, so every operation buffers one event and evicts the oldest one. Everything allocated by
+ * the map based buffer stays reachable until the event is evicted, so with {@code -prof gc} the normalized allocation
+ * rate (gc.alloc.rate.norm) is the heap retained per buffered event. The columnar buffer allocates its columns up
+ * front and nothing per event. The off-heap buffer keeps nothing on the heap at all; its chunks are allocated once and
+ * reused after being dropped.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBufferMemoryBenchmark {
+    private static final int CAPACITY = 8192;
+
+    private final MetricsReportedEvent event = new MetricsReportedEvent(3, 1500, 12);
+    private final ArrayDeque<DataPoint> mapBuffer = new ArrayDeque<>(CAPACITY);
+    private final EventSeries<MetricsReportedEvent> columnarBuffer = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withBuffer(CAPACITY, EventSeries.OverflowPolicy.DROP_OLDEST).build();
+
+    private final EventSeries<MetricsReportedEvent> offHeapBuffer = EventSeries.fromPojo(MetricsReportedEvent.class, "reported").withOffHeapBuffer(64 * 1024, 4 * 64 * 1024, EventSeries.OverflowPolicy.DROP_OLDEST).build();
+
+    @Benchmark
+    public int mapDataPoints() {
+        final Map<String, Object> fields = new HashMap<>();
+        fields.put("BatchCount", event.getBatchCount());
+        fields.put("PointCount", event.getPointCount());
+        fields.put("ReportTime", event.getReportTime());
+
+        if (mapBuffer.size() == CAPACITY) {
+            mapBuffer.poll();
+        }
+        mapBuffer.offer(new DataPoint(System.currentTimeMillis(), TimeUnit.MILLISECONDS, fields));
+        return mapBuffer.size();
+    }
+
+    @Benchmark
+    public void columnarEventSeries() {
+        columnarBuffer.commitEvent(event);
+    }
+
+    @Benchmark
+    public void offHeapEventSeries() {
+        offHeapBuffer.commitEvent(event);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(EventBufferMemoryBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,70 @@
+package net.monofraps.influxmetrics.benchmarks;
+
+import net.monofraps.influxmetrics.FieldValues;
+import net.monofraps.influxmetrics.MetricsReportedEvent;
+import net.monofraps.influxmetrics.reflection.GetterAccessor;
+import net.monofraps.influxmetrics.reflection.ReflectionUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading all event fields through Method.invoke into a HashMap (the former EventSeries.commitEvent path)
+ * with reading them through generated accessors into FieldValues.
+ * Run with {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventFieldAccessBenchmark {
+    private final MetricsReportedEvent event = new MetricsReportedEvent(3, 1500, 12);
+    private Method[] getters;
+    private String[] names;
+    private GetterAccessor[] accessors;
+
+    @Setup
+    public void setUp() {
+        final List<Method> methods = ReflectionUtils.getPublicGetters(MetricsReportedEvent.class);
+        getters = methods.toArray(new Method[0]);
+        names = new String[getters.length];
+        accessors = new GetterAccessor[getters.length];
+        for (int i = 0; i < getters.length; i++) {
+            names[i] = getters[i].getName().substring(3);
+            accessors[i] = GetterAccessor.forGetter(getters[i]);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> reflectiveInvoke() throws Exception {
+        final Map<String, Object> fieldValues = new HashMap<>(getters.length, 1f);
+        for (int i = 0; i < getters.length; i++) {
+            fieldValues.put(names[i], getters[i].invoke(event));
+        }
+        return fieldValues;
+    }
+
+    @Benchmark
+    public FieldValues generatedAccessors() {
+        final FieldValues fieldValues = new FieldValues(accessors.length);
+        for (int i = 0; i < accessors.length; i++) {
+            accessors[i].writeTo(event, names[i], fieldValues);
+        }
+        return fieldValues;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(EventFieldAccessBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,73 @@
+package net.monofraps.influxmetrics.benchmarks;
+
+import com.google.common.collect.ImmutableList;
+import net.monofraps.influxmetrics.InfluxSeriesRegistry;
+import net.monofraps.influxmetrics.MetricTag;
+import net.monofraps.influxmetrics.fields.IMeasurementField;
+import net.monofraps.influxmetrics.fields.StripedCounter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the heap retained per series by a registry holding 100k time series with three tags each. Two tag values
+ * repeat across series (100 hosts, 50 endpoints), one is unique per series. All series share their fields, so only the
+ * registry entry and series metadata (measurement name, tags, lookup key) are measured.
+ * <p>
+ * The retained heap per series is reported as the secondary result `retainedBytesPerSeries`, measured as the difference in used heap after a full GC
+ * before and after registering the series. The serial collector is used since it reports the used heap exactly after a
+ * full GC. Every fork measures a single iteration, so weakly interned strings left over from a previous iteration do
+ * not skew the result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 3, jvmArgs = {"-Xms1g", "-Xmx1g", "-XX:+UseSerialGC"})
+public class SeriesMetadataFootprintBenchmark {
+    private static final int SERIES_COUNT = 100_000;
+
+    private final List<IMeasurementField> fields = ImmutableList.of(new StripedCounter("count"));
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double retainedBytesPerSeries;
+    }
+
+    @Benchmark
+    public int registerSeries(final Footprint footprint, final BenchmarkParams params) {
+        final long usedHeapBefore = usedHeapAfterGc();
+        final InfluxSeriesRegistry registry = new InfluxSeriesRegistry();
+        for (int i = 0; i < SERIES_COUNT; i++) {
+            // tag values are created per registration, like values parsed from requests
+            final List<MetricTag> tags = ImmutableList.of(new MetricTag("host", "host-" + i % 100), new MetricTag("endpoint", "/api/v1/endpoint-" + i % 50), new MetricTag("id", String.valueOf(i)));
+            registry.timeSeries("requests", tags, fields);
+        }
+
+        // JMH sums event counters over all forks and iterations, so each one contributes its share of the mean
+        final int measurements = params.getForks() * params.getMeasurement().getCount();
+        footprint.retainedBytesPerSeries = (double) (usedHeapAfterGc() - usedHeapBefore) / SERIES_COUNT / measurements;
+        return registry.getSeries().size();
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder().include(SeriesMetadataFootprintBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
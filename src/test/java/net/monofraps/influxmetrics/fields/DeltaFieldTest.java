@@ -0,0 +1,71 @@
+package net.monofraps.influxmetrics.fields;
+
+import net.monofraps.influxmetrics.TimeSeries;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DeltaFieldTest {
+    @Test
+    public void reportsChangeSinceLastCommit() throws Exception {
+        final Counter counter = new Counter("requests");
+        final DeltaField delta = new DeltaField(counter);
+
+        counter.setValue(5);
+        assertEquals(5L, delta.getValues().get("requests"));
+        delta.commit();
+
+        counter.setValue(8);
+        assertEquals(3L, delta.getValues().get("requests"));
+    }
+
+    @Test
+    public void rollbackKeepsUnreportedChange() throws Exception {
+        final Counter counter = new Counter("requests");
+        final DeltaField delta = new DeltaField(counter);
+
+        counter.setValue(5);
+        delta.getValues();
+        delta.rollback();
+
+        counter.setValue(8);
+        assertEquals(8L, delta.getValues().get("requests"));
+    }
+
+    @Test
+    public void peekingDoesNotMarkChangeAsReported() throws Exception {
+        final Counter counter = new Counter("requests");
+        final DeltaField delta = new DeltaField(counter);
+
+        counter.setValue(5);
+        assertEquals(Long.valueOf(5), delta.getValue());
+        delta.commit();
+
+        assertEquals(5L, delta.getValues().get("requests"));
+    }
+
+    @Test
+    public void seriesWithDeltaTemporalityCommitsFields() throws Exception {
+        final Counter counter = new Counter("requests");
+        final TimeSeries series = TimeSeries.withName("m").withField(counter).withDeltaTemporality().build();
+
+        counter.setValue(5);
+        series.getValueSets();
+        series.commitValueSets();
+
+        counter.setValue(7);
+        assertEquals(2L, series.getValueSets().iterator().next().getFields().get("requests"));
+    }
+
+    @Test
+    public void deltaTemporalityKeepsGauges() throws Exception {
+        final LongGauge gauge = new LongGauge("queue", () -> 3);
+        final TimeSeries series = TimeSeries.withName("m").withField(gauge).withDeltaTemporality().build();
+        final TimeSeries budgetedSeries = TimeSeries.withName("m").withField(gauge).withDeltaTemporality().withCollectionBudget(1, TimeUnit.SECONDS).build();
+
+        assertSame(gauge, series.getFields().get(0));
+        assertTrue(budgetedSeries.getFields().get(0) instanceof TimeBudgetedField);
+    }
+}
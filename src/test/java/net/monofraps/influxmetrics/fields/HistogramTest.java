@@ -0,0 +1,117 @@
+package net.monofraps.influxmetrics.fields;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+    @Test
+    public void expandsIntoPrefixedFields() throws Exception {
+        final Histogram histogram = new Histogram("latency");
+
+        final Map<String, Object> values = histogram.getValues();
+        assertEquals(histogram.getFieldNames().size(), values.size());
+        for (String field : new String[]{"count", "min", "max", "mean", "p50", "p90", "p99", "p999"}) {
+            assertTrue(values.containsKey("latency_" + field));
+        }
+    }
+
+    @Test
+    public void emptyHistogramReportsZeros() throws Exception {
+        final Histogram.Snapshot snapshot = new Histogram("").getSnapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(99), 0);
+    }
+
+    @Test
+    public void bucketsAreContiguous() throws Exception {
+        final int significantBits = 5;
+        long expectedLowerBound = 0;
+        for (int i = 0; i < Histogram.bucketIndex(Long.MAX_VALUE, significantBits); i++) {
+            assertEquals(expectedLowerBound, Histogram.bucketLowerBound(i, significantBits));
+            assertEquals(i, Histogram.bucketIndex(expectedLowerBound, significantBits));
+            expectedLowerBound += Histogram.bucketWidth(i, significantBits);
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinRelativeError() throws Exception {
+        final Histogram histogram = new Histogram("");
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        final Histogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(100000, snapshot.getCount());
+        assertEquals(1000, snapshot.getMin());
+        assertEquals(100000000, snapshot.getMax());
+        assertEquals(50000500.0, snapshot.getMean(), 0.001);
+        assertEquals(50000000, snapshot.getValueAtPercentile(50), 50000000 / 64);
+        assertEquals(99000000, snapshot.getValueAtPercentile(99), 99000000 / 64);
+        assertEquals(99900000, snapshot.getValueAtPercentile(99.9), 99900000 / 64);
+    }
+
+    @Test
+    public void resetsOnReport() throws Exception {
+        final Histogram histogram = new Histogram("h");
+        histogram.record(5);
+
+        assertEquals(1L, histogram.getValues().get("h_count"));
+        assertEquals(0L, histogram.getValues().get("h_count"));
+    }
+
+    @Test
+    public void keepsValuesIfNotResetOnReport() throws Exception {
+        final Histogram histogram = new Histogram("h", Long.MAX_VALUE, Histogram.DEFAULT_SIGNIFICANT_BITS, false);
+        histogram.record(5);
+
+        assertEquals(1L, histogram.getValues().get("h_count"));
+        assertEquals(1L, histogram.getValues().get("h_count"));
+    }
+
+    @Test
+    public void clampsOutOfRangeValues() throws Exception {
+        final Histogram histogram = new Histogram("", 1000, 3, false);
+        histogram.record(-5);
+        histogram.record(1000000);
+
+        final Histogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(2, snapshot.getCount());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(1000000, snapshot.getMax());
+    }
+
+    @Test
+    public void doesNotLoseConcurrentRecordings() throws Exception {
+        final Histogram histogram = new Histogram("");
+        final int threadCount = 4;
+        final int recordingsPerThread = 100000;
+
+        final List<Thread> threads = new ArrayList<>(threadCount);
+        long reported = 0;
+        for (int i = 0; i < threadCount; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < recordingsPerThread; j++) {
+                    histogram.record(j);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (int i = 0; i < 10; i++) {
+            reported += histogram.getSnapshotAndReset().getCount();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        reported += histogram.getSnapshotAndReset().getCount();
+
+        assertEquals(threadCount * recordingsPerThread, reported);
+    }
+}
@@ -0,0 +1,52 @@
+package net.monofraps.influxmetrics.fields;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HyperLogLogTest {
+    @Test
+    public void emptyEstimatorReportsZero() throws Exception {
+        assertEquals(Long.valueOf(0), new HyperLogLog("users").getValue());
+    }
+
+    @Test
+    public void ignoresDuplicates() throws Exception {
+        final HyperLogLog hyperLogLog = new HyperLogLog("users");
+        for (int i = 0; i < 1000; i++) {
+            hyperLogLog.offer("user-" + (i % 10));
+        }
+
+        assertEquals(Long.valueOf(10), hyperLogLog.getValue());
+    }
+
+    @Test
+    public void estimatesLargeCardinalities() throws Exception {
+        final HyperLogLog hyperLogLog = new HyperLogLog("users");
+        final int distinct = 1000000;
+        for (long i = 0; i < distinct; i++) {
+            hyperLogLog.offer(i);
+        }
+
+        assertEquals(distinct, hyperLogLog.getValue(), distinct * 0.03);
+    }
+
+    @Test
+    public void resetsOnReport() throws Exception {
+        final HyperLogLog hyperLogLog = new HyperLogLog("users");
+        hyperLogLog.offer(1L);
+        hyperLogLog.offer(2L);
+
+        assertEquals(2L, hyperLogLog.getValues().get("users"));
+        assertEquals(0L, hyperLogLog.getValues().get("users"));
+    }
+
+    @Test
+    public void keepsRegistersIfNotResetOnReport() throws Exception {
+        final HyperLogLog hyperLogLog = new HyperLogLog("users", 10, false);
+        hyperLogLog.offer(1L);
+
+        assertEquals(1L, hyperLogLog.getValues().get("users"));
+        assertEquals(1L, hyperLogLog.getValues().get("users"));
+    }
+}
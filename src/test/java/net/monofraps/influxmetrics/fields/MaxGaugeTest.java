@@ -0,0 +1,40 @@
+package net.monofraps.influxmetrics.fields;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MaxGaugeTest {
+    @Test
+    public void reportsPeakOfInterval() throws Exception {
+        final MaxGauge gauge = new MaxGauge("depth");
+        gauge.update(3);
+        gauge.update(10);
+        gauge.update(4);
+
+        assertEquals(10L, gauge.getValues().get("depth"));
+    }
+
+    @Test
+    public void nextIntervalStartsAtLatestValue() throws Exception {
+        final MaxGauge gauge = new MaxGauge("depth");
+        gauge.update(10);
+        gauge.update(4);
+        gauge.getValues();
+
+        assertEquals(4L, gauge.getValues().get("depth"));
+        gauge.update(2);
+        assertEquals(4L, gauge.getValues().get("depth"));
+        assertEquals(2L, gauge.getValues().get("depth"));
+    }
+
+    @Test
+    public void peekingDoesNotReset() throws Exception {
+        final MaxGauge gauge = new MaxGauge("depth");
+        gauge.update(10);
+        gauge.update(4);
+
+        assertEquals(Long.valueOf(10), gauge.getValue());
+        assertEquals(10L, gauge.getValues().get("depth"));
+    }
+}
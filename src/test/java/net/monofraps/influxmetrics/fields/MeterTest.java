@@ -0,0 +1,37 @@
+package net.monofraps.influxmetrics.fields;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MeterTest {
+    @Test
+    public void reportsCountAndRateFields() throws Exception {
+        final Meter meter = new Meter("requests");
+        meter.mark();
+        meter.mark(4);
+
+        final Map<String, Object> values = meter.getValues();
+        assertEquals(meter.getFieldNames().size(), values.size());
+        assertEquals(5L, values.get("requests_count"));
+        assertTrue((Double) values.get("requests_mean_rate") > 0);
+        assertEquals(0.0, values.get("requests_m1_rate"));
+    }
+
+    @Test
+    public void movingAverageConvergesToConstantRate() throws Exception {
+        final long tickInterval = TimeUnit.SECONDS.toNanos(5);
+        final ExponentiallyWeightedMovingAverage average = new ExponentiallyWeightedMovingAverage(1, tickInterval);
+
+        average.tick(50);
+        assertEquals(10.0, average.getRate(TimeUnit.SECONDS), 0.0001);
+
+        for (int i = 0; i < 12 * 10; i++) {
+            average.tick(0);
+        }
+        assertEquals(0.0, average.getRate(TimeUnit.SECONDS), 0.01);
+    }
+}
@@ -0,0 +1,18 @@
+package net.monofraps.influxmetrics.fields;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MinGaugeTest {
+    @Test
+    public void reportsLowOfInterval() throws Exception {
+        final MinGauge gauge = new MinGauge("idle", 8);
+        gauge.update(5);
+        gauge.update(1);
+        gauge.update(6);
+
+        assertEquals(1L, gauge.getValues().get("idle"));
+        assertEquals(6L, gauge.getValues().get("idle"));
+    }
+}
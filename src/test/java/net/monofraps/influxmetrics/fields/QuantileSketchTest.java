@@ -0,0 +1,76 @@
+package net.monofraps.influxmetrics.fields;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class QuantileSketchTest {
+    @Test
+    public void reportsCountAndEncodedState() throws Exception {
+        final QuantileSketch sketch = new QuantileSketch("latency");
+        sketch.record(12.5);
+
+        final Map<String, Object> values = sketch.getValues();
+        assertEquals(1L, values.get("latency_count"));
+        assertEquals(1, QuantileSketch.State.decode((String) values.get("latency_sketch")).getCount());
+        assertEquals(0L, sketch.getValues().get("latency_count"));
+    }
+
+    @Test
+    public void encodingRoundTrips() throws Exception {
+        final QuantileSketch sketch = new QuantileSketch("");
+        sketch.record(0);
+        for (int i = 1; i <= 1000; i++) {
+            sketch.record(i * 0.5);
+        }
+
+        final QuantileSketch.State state = sketch.getStateAndReset();
+        final QuantileSketch.State decoded = QuantileSketch.State.decode(state.encode());
+
+        assertEquals(state.getCount(), decoded.getCount());
+        assertEquals(state.getRelativeAccuracy(), decoded.getRelativeAccuracy(), 0);
+        for (double percentile : new double[]{0, 10, 50, 99, 100}) {
+            assertEquals(state.getValueAtPercentile(percentile), decoded.getValueAtPercentile(percentile), 0);
+        }
+    }
+
+    @Test
+    public void mergedQuantilesAreWithinRelativeAccuracy() throws Exception {
+        final List<String> encodedStates = new ArrayList<>();
+        for (int node = 0; node < 40; node++) {
+            final QuantileSketch sketch = new QuantileSketch("");
+            for (int i = 1; i <= 1000; i++) {
+                sketch.record(node * 1000 + i);
+            }
+            encodedStates.add(sketch.getStateAndReset().encode());
+        }
+
+        final QuantileSketch.State merged = QuantileSketch.merge(encodedStates);
+        assertEquals(40000, merged.getCount());
+        assertEquals(20000, merged.getValueAtPercentile(50), 20000 * QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+        assertEquals(39600, merged.getValueAtPercentile(99), 39600 * QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesToMergeDifferentAccuracies() throws Exception {
+        final QuantileSketch.State first = new QuantileSketch("", 0.01, 16, 100).getStateAndReset();
+        final QuantileSketch.State second = new QuantileSketch("", 0.02, 16, 100).getStateAndReset();
+
+        first.merge(second);
+    }
+
+    @Test
+    public void collapsesValuesOutsideOfTrackableRange() throws Exception {
+        final QuantileSketch sketch = new QuantileSketch("", 0.01, 16, 100);
+        sketch.record(0.001);
+        sketch.record(1e9);
+
+        final QuantileSketch.State state = sketch.getStateAndReset();
+        assertEquals(2, state.getCount());
+        assertEquals(100, state.getValueAtPercentile(100), 100 * 0.01);
+    }
+}
@@ -0,0 +1,59 @@
+package net.monofraps.influxmetrics.fields;
+
+import net.monofraps.influxmetrics.TimeSeries;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SnapshotFieldGroupTest {
+    @Test
+    public void samplesOncePerCollection() throws Exception {
+        final AtomicInteger samples = new AtomicInteger(0);
+        final SnapshotFieldGroup<Integer> group = SnapshotFieldGroup.withSupplier("group", samples::incrementAndGet)
+                .withLongField("long", sample -> sample)
+                .withDoubleField("double", sample -> sample / 2.0)
+                .withField("string", String::valueOf)
+                .build();
+
+        final Map<String, Object> values = group.getValues();
+
+        assertEquals(1, samples.get());
+        assertEquals(1L, values.get("long"));
+        assertEquals(0.5, values.get("double"));
+        assertEquals("1", values.get("string"));
+    }
+
+    @Test
+    public void exposesDerivedFieldNames() throws Exception {
+        final SnapshotFieldGroup<Integer> group = SnapshotFieldGroup.withSupplier("group", () -> 0)
+                .withLongField("a", sample -> sample)
+                .withLongField("b", sample -> sample)
+                .build();
+
+        assertEquals(Arrays.asList("a", "b"), group.getFieldNames());
+    }
+
+    @Test
+    public void seriesPeekExpandsGroupsWithoutCollectingDeltas() throws Exception {
+        final AtomicInteger total = new AtomicInteger(5);
+        final SnapshotFieldGroup<Integer> group = SnapshotFieldGroup.withSupplier("group", total::get)
+                .withLongField("current", sample -> sample)
+                .withDeltaField("delta", sample -> sample)
+                .withField("missing", sample -> null)
+                .build();
+        final TimeSeries series = TimeSeries.withName("m").withField(group).build();
+
+        final Map<String, Object> values = series.peekFieldValues();
+        assertEquals(5L, values.get("current"));
+        assertEquals(5L, values.get("delta"));
+        assertEquals("null", values.get("missing"));
+        assertFalse(values.containsKey("group"));
+
+        // peeking did not mark the delta as reported
+        assertEquals(5L, group.getValues().get("delta"));
+    }
+}
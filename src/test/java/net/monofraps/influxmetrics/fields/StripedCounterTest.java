@@ -0,0 +1,64 @@
+package net.monofraps.influxmetrics.fields;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StripedCounterTest {
+    @Test
+    public void constructorStoresName() throws Exception {
+        final String name = RandomStringUtils.random(5, true, true);
+        final StripedCounter counter = new StripedCounter(name);
+
+        assertEquals(name, counter.getName());
+    }
+
+    @Test
+    public void sumsUpdates() throws Exception {
+        final StripedCounter counter = new StripedCounter("");
+
+        counter.inc();
+        counter.inc(10);
+        counter.add(5);
+        counter.dec();
+        counter.dec(3);
+
+        assertEquals(Long.valueOf(12), counter.getValue());
+    }
+
+    @Test
+    public void resetClearsValue() throws Exception {
+        final StripedCounter counter = new StripedCounter("");
+
+        counter.inc(42);
+        counter.reset();
+
+        assertEquals(Long.valueOf(0), counter.getValue());
+    }
+
+    @Test
+    public void doesNotLoseConcurrentIncrements() throws Exception {
+        final StripedCounter counter = new StripedCounter("");
+        final int threadCount = 8;
+        final int incrementsPerThread = 100000;
+
+        final List<Thread> threads = new ArrayList<>(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < incrementsPerThread; j++) {
+                    counter.inc();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(Long.valueOf(threadCount * incrementsPerThread), counter.getValue());
+    }
+}
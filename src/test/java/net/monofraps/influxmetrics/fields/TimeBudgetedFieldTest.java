@@ -0,0 +1,142 @@
+package net.monofraps.influxmetrics.fields;
+
+import net.monofraps.influxmetrics.TimeSeries;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class TimeBudgetedFieldTest {
+    @Test
+    public void reportsValueReadWithinBudget() throws Exception {
+        final AtomicLong value = new AtomicLong(5);
+        final TimeBudgetedField field = new TimeBudgetedField(new LongGauge("queue", value::get), 1, TimeUnit.SECONDS);
+
+        assertEquals(5L, field.getValues().get("queue"));
+        assertEquals(false, field.getValues().get("queue_stale"));
+        value.set(7);
+        assertEquals(7L, field.getValues().get("queue"));
+    }
+
+    @Test
+    public void reportsLastKnownValueIfReadTimesOut() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicLong reads = new AtomicLong();
+        final TimeBudgetedField field = new TimeBudgetedField(new LongGauge("queue", () -> {
+            if (reads.incrementAndGet() > 1) {
+                awaitUninterruptibly(release);
+            }
+            return 5;
+        }), 50, TimeUnit.MILLISECONDS);
+
+        assertEquals(5L, field.getValues().get("queue"));
+
+        final Map<String, Object> values = field.getValues();
+        assertEquals(5L, values.get("queue"));
+        assertEquals(true, values.get("queue_stale"));
+        release.countDown();
+    }
+
+    @Test
+    public void peekReportsWhetherTheLastCollectionWasFresh() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicLong reads = new AtomicLong();
+        final TimeBudgetedField field = new TimeBudgetedField(new LongGauge("queue", () -> {
+            if (reads.incrementAndGet() > 1) {
+                awaitUninterruptibly(release);
+            }
+            return 5;
+        }), 50, TimeUnit.MILLISECONDS);
+        final Map<String, Object> peeked = new HashMap<>();
+
+        field.getValues();
+        field.peekTo(FieldSink.forMap(peeked));
+        assertEquals(false, peeked.get("queue_stale"));
+
+        field.getValues();
+        field.peekTo(FieldSink.forMap(peeked));
+        assertEquals(5L, peeked.get("queue"));
+        assertEquals(true, peeked.get("queue_stale"));
+        release.countDown();
+    }
+
+    @Test
+    public void waitingForReadsCompensatesForkJoinWorkers() throws Exception {
+        final ForkJoinPool pool = new ForkJoinPool(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final TimeBudgetedField field = new TimeBudgetedField(new Gauge<>("remote", () -> {
+            awaitUninterruptibly(release);
+            return 1;
+        }), 1, TimeUnit.SECONDS);
+        try {
+            final ForkJoinTask<?> collection = pool.submit(() -> field.getValues());
+            // runs while the only worker waits for the read
+            assertEquals(Integer.valueOf(2), pool.submit(() -> 2).get(500, TimeUnit.MILLISECONDS));
+            release.countDown();
+            collection.get();
+        } finally {
+            release.countDown();
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void skipsFieldNeverReadWithinBudget() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final TimeBudgetedField field = new TimeBudgetedField(new Gauge<>("remote", () -> {
+            awaitUninterruptibly(release);
+            return 1;
+        }), 50, TimeUnit.MILLISECONDS);
+
+        final Map<String, Object> values = field.getValues();
+        assertFalse(values.containsKey("remote"));
+        assertEquals(true, values.get("remote_stale"));
+        release.countDown();
+    }
+
+    @Test
+    public void refreshesChronicallySlowFieldInBackground() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final TimeBudgetedField field = new TimeBudgetedField(new Gauge<>("remote", () -> {
+            awaitUninterruptibly(release);
+            return 1;
+        }), 50, TimeUnit.MILLISECONDS, 2, command -> new Thread(command).start());
+
+        field.getValues();
+        assertFalse(field.isRefreshedInBackground());
+        field.getValues();
+        assertTrue(field.isRefreshedInBackground());
+
+        // collecting does not wait for background reads
+        final long start = System.nanoTime();
+        field.getValues();
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+
+        release.countDown();
+    }
+
+    @Test
+    public void seriesWithCollectionBudgetWrapsGauges() throws Exception {
+        final Counter counter = new Counter("requests");
+        final TimeSeries series = TimeSeries.withName("m").withField(counter).withField(new LongGauge("queue", () -> 3)).withCollectionBudget(1, TimeUnit.SECONDS).build();
+
+        assertSame(counter, series.getFields().get(0));
+        assertTrue(series.getFields().get(1) instanceof TimeBudgetedField);
+        assertEquals(3L, series.getValueSets().iterator().next().getFields().get("queue"));
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
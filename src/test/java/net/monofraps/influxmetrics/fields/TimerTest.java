@@ -0,0 +1,67 @@
+package net.monofraps.influxmetrics.fields;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TimerTest {
+    @Test
+    public void reportsHistogramAndRateFields() throws Exception {
+        final Timer timer = new Timer("request");
+
+        final Map<String, Object> values = timer.getValues();
+        assertEquals(timer.getFieldNames().size(), values.size());
+        assertTrue(values.containsKey("request_p99"));
+        assertTrue(values.containsKey("request_rate"));
+    }
+
+    @Test
+    public void recordsAllTimingVariants() throws Exception {
+        final Timer timer = new Timer("");
+
+        timer.time(() -> {
+        });
+        assertEquals("result", timer.time(() -> "result"));
+        try (Timer.Context ignored = timer.time()) {
+            timer.update(1, TimeUnit.MILLISECONDS);
+        }
+
+        assertEquals(Long.valueOf(4), timer.getValue());
+    }
+
+    @Test
+    public void reusesContextPerThread() throws Exception {
+        final Timer timer = new Timer("");
+
+        final Timer.Context first = timer.time();
+        first.close();
+
+        assertSame(first, timer.time());
+    }
+
+    @Test
+    public void recordsDurationOfContext() throws Exception {
+        final Timer timer = new Timer("t");
+
+        try (Timer.Context ignored = timer.time()) {
+            Thread.sleep(5);
+        }
+
+        final Map<String, Object> values = timer.getValues();
+        assertEquals(1L, values.get("t_count"));
+        assertTrue((Long) values.get("t_max") >= TimeUnit.MILLISECONDS.toNanos(5));
+        assertTrue((Double) values.get("t_rate") > 0);
+    }
+
+    @Test
+    public void resetsOnReport() throws Exception {
+        final Timer timer = new Timer("t");
+        timer.update(1, TimeUnit.SECONDS);
+
+        assertEquals(1L, timer.getValues().get("t_count"));
+        assertEquals(0L, timer.getValues().get("t_count"));
+    }
+}
@@ -0,0 +1,126 @@
+package net.monofraps.influxmetrics.reflection;
+
+import com.google.common.io.ByteStreams;
+import net.monofraps.influxmetrics.FieldValues;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GetterAccessorTest {
+    @Test
+    public void readsPrimitiveAndObjectGetters() throws Exception {
+        final PublicEvent event = new PublicEvent();
+        final FieldValues values = new FieldValues();
+        for (String getter : new String[]{"getCount", "getSize", "getRatio", "getName", "getFlag", "getShortValue"}) {
+            GetterAccessor.forGetter(PublicEvent.class.getMethod(getter)).writeTo(event, getter, values);
+        }
+
+        final Map<String, Object> fields = values.toMap();
+        assertEquals(42L, fields.get("getCount"));
+        assertEquals(7L, fields.get("getSize"));
+        assertEquals(0.5, fields.get("getRatio"));
+        assertEquals("event", fields.get("getName"));
+        assertEquals(true, fields.get("getFlag"));
+        assertEquals((short) 3, fields.get("getShortValue"));
+    }
+
+    @Test
+    public void readsGettersOfNonPublicClasses() throws Exception {
+        final GetterAccessor accessor = GetterAccessor.forGetter(PrivateEvent.class.getMethod("getValue"));
+
+        assertEquals(5L, accessor.get(new PrivateEvent()));
+    }
+
+    @Test
+    public void readsGettersOfClassesFromChildLoaders() throws Exception {
+        // like an application's event class in a container which loads the library through a parent loader
+        final Class<?> eventClass = new ChildFirstLoader(ChildLoaderEvent.class.getName()).loadClass(ChildLoaderEvent.class.getName());
+        assertNotSame(ChildLoaderEvent.class, eventClass);
+        final Object event = eventClass.newInstance();
+
+        assertEquals(11L, GetterAccessor.forGetter(eventClass.getMethod("getCount")).get(event));
+        assertEquals("child", GetterAccessor.forGetter(eventClass.getMethod("getName")).get(event));
+    }
+
+    @Test
+    public void cachesAccessorsPerGetter() throws Exception {
+        assertSame(GetterAccessor.forGetter(PublicEvent.class.getMethod("getCount")), GetterAccessor.forGetter(PublicEvent.class.getMethod("getCount")));
+    }
+
+    public static class PublicEvent {
+        public long getCount() {
+            return 42;
+        }
+
+        public int getSize() {
+            return 7;
+        }
+
+        public double getRatio() {
+            return 0.5;
+        }
+
+        public String getName() {
+            return "event";
+        }
+
+        public boolean getFlag() {
+            return true;
+        }
+
+        public short getShortValue() {
+            return 3;
+        }
+    }
+
+    public static class ChildLoaderEvent {
+        public long getCount() {
+            return 11;
+        }
+
+        public String getName() {
+            return "child";
+        }
+    }
+
+    /**
+     * Defines the class `className` itself instead of delegating to its parent.
+     */
+    private static class ChildFirstLoader extends ClassLoader {
+        private final String className;
+
+        private ChildFirstLoader(final String className) {
+            super(GetterAccessorTest.class.getClassLoader());
+            this.className = className;
+        }
+
+        @Override
+        protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(className)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                final Class<?> loadedClass = findLoadedClass(name);
+                if (loadedClass != null) {
+                    return loadedClass;
+                }
+                try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                    final byte[] bytes = ByteStreams.toByteArray(in);
+                    return defineClass(name, bytes, 0, bytes.length);
+                } catch (IOException e) {
+                    throw new ClassNotFoundException(name, e);
+                }
+            }
+        }
+    }
+
+    private static class PrivateEvent {
+        public long getValue() {
+            return 5;
+        }
+    }
+}
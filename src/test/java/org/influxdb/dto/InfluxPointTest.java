@@ -0,0 +1,30 @@
+package org.influxdb.dto;
+
+import com.google.common.collect.ImmutableMap;
+import net.monofraps.influxmetrics.FieldValues;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class InfluxPointTest {
+    @Test
+    public void writesPrimitiveFieldsInLineProtocol() throws Exception {
+        final FieldValues values = new FieldValues();
+        values.putLong("count", 5);
+        values.putDouble("mean", 1.5);
+        values.put("name", "a \"b\"");
+
+        final Point point = InfluxPoint.forMeasurement("m").time(1, TimeUnit.MILLISECONDS).fields(values).build();
+
+        assertEquals("m count=5i,mean=1.5,name=\"a \\\"b\\\"\" 1000000", point.lineProtocol());
+    }
+
+    @Test
+    public void writesMapFieldsInLineProtocol() throws Exception {
+        final Point point = InfluxPoint.forMeasurement("m").time(1, TimeUnit.NANOSECONDS).tag(ImmutableMap.of("host", "a b")).fields(ImmutableMap.of("value", 2)).build();
+
+        assertEquals("m,host=a\\ b value=2i 1", point.lineProtocol());
+    }
+}